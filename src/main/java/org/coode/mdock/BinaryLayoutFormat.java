@@ -0,0 +1,127 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+
+/**
+ * The constants of the binary node descriptor format, which is written by
+ * {@link BinaryNodeSerialiser} and read by {@link BinaryNodeReanimator}.
+ *
+ * A descriptor starts with the magic bytes and the format version.  Then comes
+ * the string table: the number of strings, and the length and UTF-8 bytes of
+ * each one.  Strings are referred to by their index in the table plus one, so
+ * that zero can stand for <code>null</code>.  Then the nodes follow, root first.
+ * Each node starts with its type.  A splitter node has its child count, a split
+ * format, its splits and then its children.  A component node has its component
+ * count, then for each component a label and a property count, followed by
+ * the key and value of each property.  All counts, types and string indices
+ * are unsigned variable length integers.
+ */
+final class BinaryLayoutFormat {
+
+    static final byte[] MAGIC = {'m', 'd', 'c', 'k'};
+
+    static final int VERSION = 1;
+
+    static final int COMPONENT_NODE = 0;
+
+    static final int HORIZONTAL_SPLITTER_NODE = 1;
+
+    static final int VERTICAL_SPLITTER_NODE = 2;
+
+    /**
+     * The splits are written as 32 bit floats, because they can all be
+     * represented exactly as floats
+     */
+    static final int FLOAT_SPLITS = 0;
+
+    static final int DOUBLE_SPLITS = 1;
+
+    /**
+     * The limits that a descriptor is checked against, so that corrupt data
+     * can't make a reader allocate huge arrays or recurse without end
+     */
+    static final int MAX_STRING_LENGTH = 1 << 20;
+
+    static final int MAX_NESTING_DEPTH = 256;
+
+    /**
+     * Counts read from a descriptor are only trusted up to this capacity -
+     * beyond it, arrays grow as the entries are actually read
+     */
+    static final int INITIAL_CAPACITY = 16;
+
+    private BinaryLayoutFormat() {
+    }
+
+
+    /**
+     * Writes an unsigned variable length integer, seven bits per byte, least
+     * significant bits first.
+     */
+    static void writeVarInt(DataOutput out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+
+    static int readVarInt(DataInput in) throws IOException, NodeReanimationException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            if (shift == 28 && (b & 0x70) != 0) {
+                // Only the low four bits of the fifth byte fit in an int
+                break;
+            }
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                if (value < 0) {
+                    break;
+                }
+                return value;
+            }
+        }
+        throw new NodeReanimationException("Invalid variable length integer");
+    }
+
+
+    /**
+     * Reads a variable length integer which must not be greater than a
+     * given maximum.
+     */
+    static int readVarInt(DataInput in, int max, String description) throws IOException,
+                                                                              NodeReanimationException {
+        int value = readVarInt(in);
+        if (value > max) {
+            throw new NodeReanimationException("Invalid " + description + ": " + value);
+        }
+        return value;
+    }
+}
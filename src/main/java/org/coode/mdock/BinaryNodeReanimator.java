@@ -0,0 +1,184 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Creates a tree of <code>Node</code>s from a binary node descriptor written
+ * by a {@link BinaryNodeSerialiser}.
+ */
+public class BinaryNodeReanimator {
+
+    private ComponentFactory componentFactory;
+
+    private boolean lazy;
+
+
+    /**
+     * Creates a <code>BinaryNodeReanimator</code>.
+     * @param componentFactory The component factory which should be used
+     * to create the components that are contained in component nodes.
+     * @param lazy If <code>true</code>, component nodes are given placeholders
+     * (see {@link PlaceholderComponent}) rather than components, and the factory only
+     * creates each component when it is first shown.
+     */
+    public BinaryNodeReanimator(ComponentFactory componentFactory, boolean lazy) {
+        this.componentFactory = componentFactory;
+        this.lazy = lazy;
+    }
+
+
+    /**
+     * Reads a binary node descriptor.  The stream is buffered, so it may be
+     * read beyond the end of the descriptor.
+     * @param is The stream which the node descriptor will be read from.
+     * @return The root node of the tree described by the descriptor.
+     * @throws IOException if the descriptor couldn't be read, or ended early.
+     * @throws NodeReanimationException if the stream doesn't contain a binary
+     * node descriptor, the descriptor is written in a later version of the format,
+     * or it contains a value which is out of range.
+     */
+    public SplitterNode read(InputStream is) throws IOException, NodeReanimationException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        byte[] magic = new byte[BinaryLayoutFormat.MAGIC.length];
+        in.readFully(magic);
+        if (!Arrays.equals(magic, BinaryLayoutFormat.MAGIC)) {
+            throw new NodeReanimationException("The stream does not contain a binary node descriptor");
+        }
+        int version = BinaryLayoutFormat.readVarInt(in);
+        if (version < 1 || version > BinaryLayoutFormat.VERSION) {
+            throw new NodeReanimationException("Unsupported binary node descriptor version: " + version);
+        }
+        int stringCount = BinaryLayoutFormat.readVarInt(in);
+        List<String> stringTable = new ArrayList<>(Math.min(stringCount, BinaryLayoutFormat.INITIAL_CAPACITY) + 1);
+        // Index zero stands for null
+        stringTable.add(null);
+        byte[] buffer = new byte[256];
+        for (int i = 0; i < stringCount; i++) {
+            int length = BinaryLayoutFormat.readVarInt(in, BinaryLayoutFormat.MAX_STRING_LENGTH, "string length");
+            if (length > buffer.length) {
+                buffer = new byte[length];
+            }
+            in.readFully(buffer, 0, length);
+            stringTable.add(new String(buffer, 0, length, StandardCharsets.UTF_8));
+        }
+        String[] strings = stringTable.toArray(new String[stringTable.size()]);
+        int type = BinaryLayoutFormat.readVarInt(in);
+        if (type == BinaryLayoutFormat.COMPONENT_NODE) {
+            throw new NodeReanimationException("The root node must be a splitter node");
+        }
+        return readSplitterNode(in, type, strings, 0);
+    }
+
+
+    private Node readNode(DataInputStream in, String[] strings, int depth) throws IOException,
+                                                                               NodeReanimationException {
+        int type = BinaryLayoutFormat.readVarInt(in);
+        if (type == BinaryLayoutFormat.COMPONENT_NODE) {
+            return readComponentNode(in, strings);
+        }
+        return readSplitterNode(in, type, strings, depth);
+    }
+
+
+    private SplitterNode readSplitterNode(DataInputStream in, int type, String[] strings, int depth) throws IOException,
+                                                                                                         NodeReanimationException {
+        if (type != BinaryLayoutFormat.HORIZONTAL_SPLITTER_NODE && type != BinaryLayoutFormat.VERTICAL_SPLITTER_NODE) {
+            throw new NodeReanimationException("Unknown type of node: " + type);
+        }
+        if (depth >= BinaryLayoutFormat.MAX_NESTING_DEPTH) {
+            throw new NodeReanimationException("Splitter nodes are nested too deeply");
+        }
+        int childCount = BinaryLayoutFormat.readVarInt(in);
+        int splitFormat = in.readUnsignedByte();
+        if (splitFormat != BinaryLayoutFormat.FLOAT_SPLITS && splitFormat != BinaryLayoutFormat.DOUBLE_SPLITS) {
+            throw new NodeReanimationException("Unknown split format: " + splitFormat);
+        }
+        double[] splits = new double[Math.min(childCount, BinaryLayoutFormat.INITIAL_CAPACITY)];
+        for (int i = 0; i < childCount; i++) {
+            if (i == splits.length) {
+                splits = Arrays.copyOf(splits, Math.min(childCount, i * 2));
+            }
+            if (splitFormat == BinaryLayoutFormat.FLOAT_SPLITS) {
+                splits[i] = in.readFloat();
+            }
+            else {
+                splits[i] = in.readDouble();
+            }
+        }
+        List<Node> children = new ArrayList<>(Math.min(childCount, BinaryLayoutFormat.INITIAL_CAPACITY));
+        for (int i = 0; i < childCount; i++) {
+            children.add(readNode(in, strings, depth + 1));
+        }
+        if (type == BinaryLayoutFormat.HORIZONTAL_SPLITTER_NODE) {
+            return new HorizontalSplitterNode(children, splits);
+        }
+        else {
+            return new VerticalSplitterNode(children, splits);
+        }
+    }
+
+
+    private ComponentNode readComponentNode(DataInputStream in, String[] strings) throws IOException,
+                                                                                     NodeReanimationException {
+        ComponentNode componentNode = new ComponentNode();
+        int componentCount = BinaryLayoutFormat.readVarInt(in);
+        for (int i = 0; i < componentCount; i++) {
+            String label = readString(in, strings);
+            int propertyCount = BinaryLayoutFormat.readVarInt(in);
+            Map<String, String> properties = new HashMap<>();
+            for (int j = 0; j < propertyCount; j++) {
+                String key = readString(in, strings);
+                properties.put(key, readString(in, strings));
+            }
+            if (lazy) {
+                componentNode.addPlaceholder(label, componentFactory, properties);
+            }
+            else {
+                componentNode.add(componentFactory.createComponent(properties), label);
+            }
+        }
+        return componentNode;
+    }
+
+
+    private static String readString(DataInputStream in, String[] strings) throws IOException,
+                                                                             NodeReanimationException {
+        int index = BinaryLayoutFormat.readVarInt(in);
+        if (index >= strings.length) {
+            throw new NodeReanimationException("Invalid string index: " + index);
+        }
+        return strings[index];
+    }
+}
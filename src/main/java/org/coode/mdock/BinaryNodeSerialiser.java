@@ -0,0 +1,169 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import javax.swing.*;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Saves a node tree in the compact binary node descriptor format (see
+ * {@link BinaryLayoutFormat}).  Labels, property keys and property values are
+ * written once each in a string table, and splits are written as floats when
+ * that doesn't lose any precision.  The tree can be read back by a
+ * {@link BinaryNodeReanimator}.
+ */
+public class BinaryNodeSerialiser {
+
+    private Node node;
+
+    private ComponentPropertiesFactory factory;
+
+    private OutputStream outputStream;
+
+    private List<String> strings;
+
+    private Map<String, Integer> stringIndices;
+
+
+    /**
+     * Creates a serialiser for the specified node.
+     * @param node The node to be serialised.
+     * @param factory The <code>ComponentPropertiesFactory</code> which should be used to
+     * generate a set of properties for a given component which can be used to reanimate the
+     * component.
+     * @param outputStream The stream which the node descriptor should be written to.
+     */
+    public BinaryNodeSerialiser(Node node, ComponentPropertiesFactory factory, OutputStream outputStream) {
+        this.node = node;
+        this.factory = factory;
+        this.outputStream = outputStream;
+    }
+
+
+    /**
+     * Writes the node descriptor to the stream.  The stream is flushed, but
+     * not closed.
+     */
+    public void serialise() throws IOException {
+        strings = new ArrayList<>();
+        stringIndices = new HashMap<>();
+        // The nodes are written first, because the string table that precedes
+        // them is only complete once all of the nodes have been written
+        ByteArrayOutputStream nodeBytes = new ByteArrayOutputStream();
+        writeNode(new DataOutputStream(nodeBytes), node);
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream));
+        out.write(BinaryLayoutFormat.MAGIC);
+        BinaryLayoutFormat.writeVarInt(out, BinaryLayoutFormat.VERSION);
+        BinaryLayoutFormat.writeVarInt(out, strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            BinaryLayoutFormat.writeVarInt(out, bytes.length);
+            out.write(bytes);
+        }
+        nodeBytes.writeTo(out);
+        out.flush();
+        strings = null;
+        stringIndices = null;
+    }
+
+
+    private void writeNode(DataOutputStream out, Node node) throws IOException {
+        if (node instanceof ComponentNode) {
+            ComponentNode componentNode = (ComponentNode) node;
+            List<JComponent> components = componentNode.getComponents();
+            BinaryLayoutFormat.writeVarInt(out, BinaryLayoutFormat.COMPONENT_NODE);
+            BinaryLayoutFormat.writeVarInt(out, components.size());
+            for (JComponent component : components) {
+                writeString(out, componentNode.getLabel(component));
+                Map<String, String> properties = NodeSerialiser.getProperties(component, factory);
+                BinaryLayoutFormat.writeVarInt(out, properties.size());
+                for (Map.Entry<String, String> property : properties.entrySet()) {
+                    writeString(out, property.getKey());
+                    writeString(out, property.getValue());
+                }
+            }
+        }
+        else if (node instanceof SplitterNode) {
+            SplitterNode splitterNode = (SplitterNode) node;
+            List<Node> children = splitterNode.getVisibleChildren();
+            if (splitterNode instanceof HorizontalSplitterNode) {
+                BinaryLayoutFormat.writeVarInt(out, BinaryLayoutFormat.HORIZONTAL_SPLITTER_NODE);
+            }
+            else {
+                BinaryLayoutFormat.writeVarInt(out, BinaryLayoutFormat.VERTICAL_SPLITTER_NODE);
+            }
+            BinaryLayoutFormat.writeVarInt(out, children.size());
+            boolean floatSplits = true;
+            for (Node child : children) {
+                double split = splitterNode.getSplit(child);
+                if ((float) split != split) {
+                    floatSplits = false;
+                    break;
+                }
+            }
+            if (floatSplits) {
+                out.writeByte(BinaryLayoutFormat.FLOAT_SPLITS);
+                for (Node child : children) {
+                    out.writeFloat((float) splitterNode.getSplit(child));
+                }
+            }
+            else {
+                out.writeByte(BinaryLayoutFormat.DOUBLE_SPLITS);
+                for (Node child : children) {
+                    out.writeDouble(splitterNode.getSplit(child));
+                }
+            }
+            for (Node child : children) {
+                writeNode(out, child);
+            }
+        }
+        else {
+            throw new IllegalArgumentException("Unknown type of node: " + node);
+        }
+    }
+
+
+    private void writeString(DataOutputStream out, String string) throws IOException {
+        if (string == null) {
+            BinaryLayoutFormat.writeVarInt(out, 0);
+            return;
+        }
+        Integer index = stringIndices.get(string);
+        if (index == null) {
+            strings.add(string);
+            index = strings.size();
+            stringIndices.put(string, index);
+        }
+        BinaryLayoutFormat.writeVarInt(out, index);
+    }
+}
@@ -23,6 +23,8 @@ package org.coode.mdock;
  */
 
 import javax.swing.*;
+import javax.swing.event.ChangeEvent;
+import javax.swing.event.ChangeListener;
 import javax.swing.plaf.TabbedPaneUI;
 import java.awt.*;
 import java.util.*;
@@ -45,6 +47,12 @@ import java.util.List;
  */
 public class ComponentNode extends Node {
 
+    /**
+     * The client property which maps the components held by a component node,
+     * and its tabbed pane, to the node.
+     */
+    public static final String COMPONENT_NODE_PROPERTY = "org.coode.mdock.ComponentNode";
+
     private final JTabbedPane tabbedPane;
 
     private final List<JComponent> components;
@@ -53,6 +61,8 @@ public class ComponentNode extends Node {
 
     private final JComponent baseComponent;
 
+    private HibernationPolicy hibernationPolicy;
+
 
     public ComponentNode() {
         baseComponent = new JPanel(new BorderLayout()) {
@@ -72,6 +82,13 @@ public class ComponentNode extends Node {
             public void removeAll() {
                 super.removeAll();
             }
+
+
+            protected void addImpl(Component comp, Object constraints, int index) {
+                if (!transferComponent(this, comp, constraints, index)) {
+                    super.addImpl(comp, constraints, index);
+                }
+            }
         };
         components = new ArrayList<>();
         component2LabelMap = new HashMap<>();
@@ -81,8 +98,29 @@ public class ComponentNode extends Node {
             public void remove(Component component) {
                 ComponentNode.this.remove((JComponent) component);
             }
+
+            @Override
+            protected void addImpl(Component comp, Object constraints, int index) {
+                if (!transferComponent(this, comp, constraints, index)) {
+                    super.addImpl(comp, constraints, index);
+                }
+            }
         };
         tabbedPane.setUI(tabbedPaneUI);
+        tabbedPane.putClientProperty(COMPONENT_NODE_PROPERTY, this);
+        tabbedPane.addChangeListener(new ChangeListener() {
+            public void stateChanged(ChangeEvent e) {
+                // A placeholder is replaced as soon as its tab is selected
+                Component selectedComponent = tabbedPane.getSelectedComponent();
+                if (selectedComponent instanceof PlaceholderComponent) {
+                    if (tabbedPane.isShowing()) {
+                        materialise((PlaceholderComponent) selectedComponent);
+                    }
+                } else if (hibernationPolicy != null && selectedComponent instanceof JComponent) {
+                    hibernationPolicy.componentUsed(ComponentNode.this, (JComponent) selectedComponent);
+                }
+            }
+        });
         baseComponent.setBorder(UIComponentFactory.getInstance().createComponentNodeBorder());
     }
 
@@ -98,23 +136,159 @@ public class ComponentNode extends Node {
     public void add(JComponent component, String label) {
         components.add(component);
         component2LabelMap.put(component, label);
+        component.putClientProperty(COMPONENT_NODE_PROPERTY, this);
         if (components.size() == 1) {
             baseComponent.add(component);
-        } else if (components.size() > 1) {
-            baseComponent.removeAll();
+        } else if (tabbedPane.getParent() == baseComponent) {
+            tabbedPane.add(label, component);
+        } else {
+            if (!baseComponent.isDisplayable()) {
+                // The tabbed pane can't transfer the existing component from the
+                // base component, so it would ask this node to remove it
+                baseComponent.removeAll();
+            }
+            // The tabbed pane is added first, so that components which are
+            // showing can be transferred into it (see transferComponent)
+            baseComponent.add(tabbedPane);
             for (JComponent c : components) {
                 tabbedPane.add(component2LabelMap.get(c), c);
             }
-            baseComponent.add(tabbedPane);
         }
 
 
 //        tabbedPane.add(label, component);
 
+        if (components.size() == 1) {
+            // We have just become visible
+            notifyStateChange();
+            postNodeTreeEvent(NodeTreeEvent.visibilityChanged(this));
+        }
+
         if (component instanceof NodeComponent) {
             // Notify the component that it was added to us
             ((NodeComponent) component).addedToNode(this);
         }
+        postNodeTreeEvent(NodeTreeEvent.componentAdded(this, component));
+        if (hibernationPolicy != null && !(component instanceof PlaceholderComponent)) {
+            hibernationPolicy.componentUsed(this, component);
+        }
+    }
+
+
+    /**
+     * Adds a placeholder for a component to this node.  The component is created, and
+     * replaces the placeholder, the first time that the placeholder is shown (for example,
+     * when its tab is selected).
+     *
+     * @param label            The label for the component
+     * @param componentFactory The factory which creates the component
+     * @param properties       The properties which the factory should create the component from
+     * @return The placeholder
+     */
+    public PlaceholderComponent addPlaceholder(String label, ComponentFactory componentFactory, Map<String, String> properties) {
+        PlaceholderComponent placeholder = new PlaceholderComponent(componentFactory, properties);
+        add(placeholder, label);
+        return placeholder;
+    }
+
+
+    /**
+     * Replaces a placeholder held by this node with the component that it stands in for.
+     * The component takes the place (and label) of the placeholder.
+     *
+     * @param placeholder The placeholder
+     * @return The component which replaced the placeholder, or <code>null</code> if the
+     * placeholder isn't held by this node.
+     */
+    public JComponent materialise(PlaceholderComponent placeholder) {
+        if (!components.contains(placeholder)) {
+            return null;
+        }
+        JComponent component = placeholder.createComponent();
+        replaceComponent(placeholder, component);
+        if (component instanceof NodeComponent) {
+            ((NodeComponent) component).addedToNode(this);
+        }
+        postNodeTreeEvent(NodeTreeEvent.componentRemoved(this, placeholder));
+        postNodeTreeEvent(NodeTreeEvent.componentAdded(this, component));
+        if (hibernationPolicy != null) {
+            hibernationPolicy.componentUsed(this, component);
+        }
+        return component;
+    }
+
+
+    /**
+     * Sets the policy which limits the number of live components held by this node (and any
+     * other nodes which share the policy) by hibernating components in unselected tabs.
+     *
+     * @param hibernationPolicy The policy, or <code>null</code> if the components held by this
+     *                          node should never be hibernated.
+     */
+    public void setHibernationPolicy(HibernationPolicy hibernationPolicy) {
+        if (this.hibernationPolicy != null) {
+            for (JComponent component : components) {
+                this.hibernationPolicy.componentReleased(component);
+            }
+        }
+        this.hibernationPolicy = hibernationPolicy;
+        if (hibernationPolicy != null) {
+            for (JComponent component : new ArrayList<JComponent>(components)) {
+                if (!(component instanceof PlaceholderComponent)) {
+                    hibernationPolicy.componentUsed(this, component);
+                }
+            }
+        }
+    }
+
+
+    public HibernationPolicy getHibernationPolicy() {
+        return hibernationPolicy;
+    }
+
+
+    /**
+     * Determines whether a component held by this node can be hibernated, which it can
+     * if it is live and is in an unselected tab.
+     */
+    boolean canHibernate(JComponent component) {
+        return !(component instanceof PlaceholderComponent)
+                && tabbedPane.getParent() == baseComponent
+                && tabbedPane.getSelectedComponent() != component
+                && components.contains(component);
+    }
+
+
+    /**
+     * Replaces a component held by this node with a placeholder created by the
+     * hibernation policy.  The component is discarded.
+     */
+    void hibernate(JComponent component) {
+        PlaceholderComponent placeholder = hibernationPolicy.createPlaceholder(component);
+        replaceComponent(component, placeholder);
+        hibernationPolicy.componentReleased(component);
+        postNodeTreeEvent(NodeTreeEvent.componentRemoved(this, component));
+        postNodeTreeEvent(NodeTreeEvent.componentAdded(this, placeholder));
+    }
+
+
+    /**
+     * Puts a component in the place, and with the label, of a component held by this node.
+     */
+    private void replaceComponent(JComponent component, JComponent replacement) {
+        String label = component2LabelMap.remove(component);
+        components.set(components.indexOf(component), replacement);
+        component2LabelMap.put(replacement, label);
+        component.putClientProperty(COMPONENT_NODE_PROPERTY, null);
+        replacement.putClientProperty(COMPONENT_NODE_PROPERTY, this);
+        if (tabbedPane.getParent() == baseComponent) {
+            // Doesn't disturb the other tabs
+            tabbedPane.setComponentAt(tabbedPane.indexOfComponent(component), replacement);
+        } else {
+            baseComponent.removeAll();
+            baseComponent.add(replacement);
+        }
+        baseComponent.revalidate();
     }
 
 
@@ -136,28 +310,130 @@ public class ComponentNode extends Node {
     }
 
     public void remove(JComponent component) {
+        if (!components.contains(component)) {
+            // Not ours, so there is nothing to remove
+            return;
+        }
+        if (hibernationPolicy != null) {
+            hibernationPolicy.componentReleased(component);
+        }
         component2LabelMap.remove(component);
         components.remove(component);
+        if (component.getClientProperty(COMPONENT_NODE_PROPERTY) == this) {
+            component.putClientProperty(COMPONENT_NODE_PROPERTY, null);
+        }
 
-        baseComponent.removeAll();
-        tabbedPane.removeAll();
-        if (components.size() == 1) {
-            baseComponent.add(components.get(0));
+        if (tabbedPane.getParent() != baseComponent) {
+            // The component was the only one
+            baseComponent.removeAll();
         } else if (components.size() > 1) {
-            for (JComponent c : components) {
-                tabbedPane.add(component2LabelMap.get(c), c);
+            // Just the tab for the component goes - the others are left as they are
+            int tabIndex = tabbedPane.indexOfComponent(component);
+            if (tabIndex != -1) {
+                tabbedPane.removeTabAt(tabIndex);
             }
-            baseComponent.add(tabbedPane);
+        } else {
+            // Back to a single component, which replaces the tabbed pane
+            JComponent remainingComponent = components.get(0);
+            if (baseComponent.isDisplayable()) {
+                // Transfers the remaining component (see transferComponent)
+                baseComponent.add(remainingComponent);
+                tabbedPane.removeAll();
+                baseComponent.remove(baseComponent.getComponentZOrder(tabbedPane));
+            } else {
+                tabbedPane.removeAll();
+                baseComponent.removeAll();
+                baseComponent.add(remainingComponent);
+            }
+            // The tabbed pane may have hidden it
+            remainingComponent.setVisible(true);
         }
 
+        postNodeTreeEvent(NodeTreeEvent.componentRemoved(this, component));
+        if (components.isEmpty()) {
+            // We have just become invisible - removing a tab doesn't change
+            // the geometry of the tree
+            notifyStateChange();
+            postNodeTreeEvent(NodeTreeEvent.visibilityChanged(this));
+        }
         removeFromParentIfEmpty();
-        notifyStateChange();
+    }
+
+
+    /**
+     * Removes a component from this node, so that it can be added to another node,
+     * without removing it from the component hierarchy.  The component is moved into
+     * the specified container, which it can then be transferred out of when it is added
+     * to another node (see {@link #add(JComponent, String)}).  Provided that the container
+     * is showing in the same window as the component, the component and its descendants
+     * are not removed from and re-added to the display (i.e. they are not sent
+     * <code>removeNotify</code> and <code>addNotify</code>), so it stays realised.
+     * @param component The component to be removed
+     * @param holder The container which holds the component until it is added to
+     * another node.  Its layout should ignore the component.
+     */
+    public void removeForTransfer(JComponent component, Container holder) {
+        if (!components.contains(component)) {
+            throw new IllegalArgumentException("Component is not held by this node");
+        }
+        if (!transferComponent(holder, component, null, -1)) {
+            holder.add(component);
+        }
+        // A tabbed pane hides the components which aren't selected
+        component.setVisible(true);
+        remove(component);
+    }
+
+
+    /**
+     * Gets the component node which holds the specified component.
+     * @param component The component
+     * @return The component node, or <code>null</code> if the component
+     * isn't held by a component node.
+     */
+    public static ComponentNode getComponentNode(JComponent component) {
+        Object node = component.getClientProperty(COMPONENT_NODE_PROPERTY);
+        if (node instanceof ComponentNode) {
+            return (ComponentNode) node;
+        }
+        return null;
+    }
+
+
+    /**
+     * Adds a component which is showing in one container to another container which is showing,
+     * in the same way as <code>Container.addImpl</code>, except that the component is moved with
+     * <code>setComponentZOrder</code>.  This only sends the component <code>removeNotify</code>
+     * and <code>addNotify</code> if its native container changes, whereas adding it to the container
+     * in the normal way always does, and that can be costly for complex components.
+     * @return <code>true</code> if the component was transferred, or <code>false</code> if it isn't
+     * showing in another container and should be added in the normal way.
+     */
+    private static boolean transferComponent(Container container, Component comp, Object constraints, int index) {
+        Container parent = comp.getParent();
+        if (parent == null || parent == container || !comp.isDisplayable() || !container.isDisplayable()) {
+            return false;
+        }
+        if (index < 0) {
+            index = container.getComponentCount();
+        }
+        container.setComponentZOrder(comp, index);
+        LayoutManager layout = container.getLayout();
+        if (layout instanceof LayoutManager2) {
+            ((LayoutManager2) layout).addLayoutComponent(comp, constraints);
+        }
+        else if (layout != null && constraints instanceof String) {
+            layout.addLayoutComponent((String) constraints, comp);
+        }
+        return true;
     }
 
 
     private void removeFromParentIfEmpty() {
         if (getComponentCount() == 0) {
-            baseComponent.getParent().remove(baseComponent);
+            if (baseComponent.getParent() != null) {
+                baseComponent.getParent().remove(baseComponent);
+            }
             remove();
         }
     }
@@ -194,19 +470,6 @@ public class ComponentNode extends Node {
         return getComponentCount() != 0;
     }
 
-    public double getGloballyNormalisedXLocation(Node child) {
-        if (getParent() == null) {
-            return 1.0;
-        } else {
-            // Ask our parent
-            return getParent().getGloballyNormalisedYLocation();
-        }
-    }
-
-    public double getGloballyNormalisedYLocation(Node child) {
-        return 0;
-    }
-
     protected void stateChanged() {
     }
 
@@ -25,6 +25,12 @@ package org.coode.mdock;
 import javax.swing.*;
 import javax.swing.plaf.basic.BasicTabbedPaneUI;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.util.Arrays;
 
 
 /**
@@ -37,11 +43,79 @@ import java.awt.*;
  * www.cs.man.ac.uk/~horridgm
  *
  * Developed as part of the CO-ODE project (http://www.co-ode.org)
+ *
+ * If the tab layout policy of the tabbed pane is
+ * <code>JTabbedPane.SCROLL_TAB_LAYOUT</code>, and the tabs are placed at the
+ * top or bottom, the tabs are laid out in a single run, and only the tabs
+ * which fit in the visible window of the run are laid out and painted.  The
+ * window can be scrolled with the mouse wheel, and a quick jump list of all
+ * of the tabs is shown from a button at the end of the run.
  */
 public class ComponentNodeTabbedPaneUI extends BasicTabbedPaneUI {
 
     private static final int TAB_HEIGHT = 16;
 
+    /**
+     * The insets are shared by all instances, and must not be modified
+     */
+    private static final Insets NO_INSETS = new Insets(0, 0, 0, 0);
+
+    private static final Insets TAB_AREA_INSETS = new Insets(1, 1, 1, 1);
+
+    private static final Color SELECTED_TITLE_COLOR = Color.DARK_GRAY.darker();
+
+    private static final int QUICK_JUMP_BUTTON_WIDTH = 14;
+
+    private static final int QUICK_JUMP_LIST_ROWS = 20;
+
+    /**
+     * The widths of the tabs, indexed by tab, and the titles and font
+     * that they were measured with
+     */
+    private int[] tabWidths = new int[0];
+
+    private String[] tabWidthTitles = new String[0];
+
+    private Font tabWidthFont;
+
+    /**
+     * The laid out titles of the tabs, indexed by tab, and the titles, font
+     * and rendering context that they were laid out with
+     */
+    private GlyphVector[] titleGlyphs = new GlyphVector[0];
+
+    private String[] titleGlyphTitles = new String[0];
+
+    private Font titleGlyphFont;
+
+    private FontRenderContext titleGlyphContext;
+
+    /**
+     * The index of the first tab in the visible window, when the tabs
+     * scroll
+     */
+    private int firstVisibleTab;
+
+    /**
+     * The range of tabs which were laid out by the last layout, and the
+     * selected tab at that time
+     */
+    private int laidOutFirstTab;
+
+    private int laidOutLastTab = -1;
+
+    private int laidOutSelectedTab = -1;
+
+    /**
+     * The bounds of the tab run, and of the quick jump button (which are
+     * empty if all of the tabs are visible)
+     */
+    private final Rectangle tabRunBounds = new Rectangle();
+
+    private final Rectangle quickJumpBounds = new Rectangle();
+
+    private MouseAdapter scrollMouseListener;
+
     protected void installDefaults() {
         super.installDefaults();
         tabAreaInsets.left = 0;
@@ -67,7 +141,38 @@ public class ComponentNodeTabbedPaneUI extends BasicTabbedPaneUI {
      * @since 1.4
      */
     protected void paintTabArea(Graphics g, int tabPlacement, int selectedIndex) {
-        super.paintTabArea(g, tabPlacement, selectedIndex);
+        if (!isScrollingTabs(tabPlacement)) {
+            super.paintTabArea(g, tabPlacement, selectedIndex);
+            return;
+        }
+        int tabCount = Math.min(tabPane.getTabCount(), laidOutLastTab + 1);
+        Rectangle iconRect = new Rectangle();
+        Rectangle textRect = new Rectangle();
+        // The selected tab is painted last, so that it's on top
+        for (int i = laidOutFirstTab; i < tabCount; i++) {
+            if (i != selectedIndex) {
+                paintTab(g, tabPlacement, rects, i, iconRect, textRect);
+            }
+        }
+        if (selectedIndex >= laidOutFirstTab && selectedIndex < tabCount) {
+            paintTab(g, tabPlacement, rects, selectedIndex, iconRect, textRect);
+        }
+        if (!quickJumpBounds.isEmpty()) {
+            paintQuickJumpButton(g);
+        }
+    }
+
+
+    /**
+     * Paints the quick jump button as a small arrow pointing down.
+     */
+    private void paintQuickJumpButton(Graphics g) {
+        int centreX = quickJumpBounds.x + quickJumpBounds.width / 2;
+        int centreY = quickJumpBounds.y + quickJumpBounds.height / 2;
+        g.setColor(Color.GRAY);
+        for (int i = 0; i < 4; i++) {
+            g.drawLine(centreX - 3 + i, centreY - 1 + i, centreX + 3 - i, centreY - 1 + i);
+        }
     }
 
 
@@ -79,12 +184,18 @@ public class ComponentNodeTabbedPaneUI extends BasicTabbedPaneUI {
     protected void paintText(Graphics g, int tabPlacement, Font font, FontMetrics metrics, int tabIndex, String title,
                              Rectangle textRect, boolean isSelected) {
         if (isSelected) {
-            g.setColor(Color.DARK_GRAY.darker());
+            g.setColor(SELECTED_TITLE_COLOR);
         }
         else {
             g.setColor(Color.GRAY);
         }
-        g.drawString(title, textRect.x, textRect.y + metrics.getAscent());
+        if (g instanceof Graphics2D) {
+            Graphics2D g2 = (Graphics2D) g;
+            g2.drawGlyphVector(getTitleGlyphs(g2, font, tabIndex, title), textRect.x, textRect.y + metrics.getAscent());
+        }
+        else {
+            g.drawString(title, textRect.x, textRect.y + metrics.getAscent());
+        }
         //super.paintText(g, tabPlacement, font, metrics, tabIndex, title, textRect, isSelected);
     }
 
@@ -95,23 +206,49 @@ public class ComponentNodeTabbedPaneUI extends BasicTabbedPaneUI {
     }
 
 
+    /**
+     * Gets the laid out title of a tab.  A title is only laid out again if it,
+     * the font, or the rendering context, changes.
+     */
+    private GlyphVector getTitleGlyphs(Graphics2D g2, Font font, int tabIndex, String title) {
+        FontRenderContext frc = g2.getFontRenderContext();
+        if (!font.equals(titleGlyphFont) || !frc.equals(titleGlyphContext)) {
+            Arrays.fill(titleGlyphs, null);
+            titleGlyphFont = font;
+            titleGlyphContext = frc;
+        }
+        if (tabIndex >= titleGlyphs.length) {
+            int length = Math.max(tabIndex + 1, titleGlyphs.length * 2);
+            titleGlyphs = Arrays.copyOf(titleGlyphs, length);
+            titleGlyphTitles = Arrays.copyOf(titleGlyphTitles, length);
+        }
+        GlyphVector glyphs = titleGlyphs[tabIndex];
+        if (glyphs == null || !title.equals(titleGlyphTitles[tabIndex])) {
+            glyphs = font.createGlyphVector(frc, title);
+            titleGlyphs[tabIndex] = glyphs;
+            titleGlyphTitles[tabIndex] = title;
+        }
+        return glyphs;
+    }
+
+
     protected Insets getContentBorderInsets(int tabPlacement) {
-        return new Insets(0, 0, 0, 0);
+        return NO_INSETS;
     }
 
 
     protected Insets getTabInsets(int tabPlacement, int tabIndex) {
-        return new Insets(0, 0, 0, 0);
+        return NO_INSETS;
     }
 
 
     protected Insets getSelectedTabPadInsets(int tabPlacement) {
-        return new Insets(0, 0, 0, 0);
+        return NO_INSETS;
     }
 
 
     protected Insets getTabAreaInsets(int tabPlacement) {
-        return new Insets(1, 1, 1, 1);
+        return TAB_AREA_INSETS;
     }
 
 
@@ -179,8 +316,31 @@ public class ComponentNodeTabbedPaneUI extends BasicTabbedPaneUI {
     }
 
 
+    /**
+     * Calculates the width of a tab.  The widths of tabs which just have a plain
+     * title are remembered until the title or font changes.
+     */
     protected int calculateTabWidth(int tabPlacement, int tabIndex, FontMetrics metrics) {
-        return super.calculateTabWidth(tabPlacement, tabIndex, metrics) + 3;
+        String title = tabPane.getTitleAt(tabIndex);
+        boolean plainTitle = tabPane.getIconAt(tabIndex) == null && tabPane.getTabComponentAt(tabIndex) == null
+                && getTextViewForTab(tabIndex) == null;
+        if (!plainTitle) {
+            return super.calculateTabWidth(tabPlacement, tabIndex, metrics) + 3;
+        }
+        if (!metrics.getFont().equals(tabWidthFont)) {
+            Arrays.fill(tabWidthTitles, null);
+            tabWidthFont = metrics.getFont();
+        }
+        if (tabIndex >= tabWidths.length) {
+            int length = Math.max(tabIndex + 1, tabWidths.length * 2);
+            tabWidths = Arrays.copyOf(tabWidths, length);
+            tabWidthTitles = Arrays.copyOf(tabWidthTitles, length);
+        }
+        if (title == null || !title.equals(tabWidthTitles[tabIndex])) {
+            tabWidths[tabIndex] = super.calculateTabWidth(tabPlacement, tabIndex, metrics) + 3;
+            tabWidthTitles[tabIndex] = title;
+        }
+        return tabWidths[tabIndex];
     }
 
 
@@ -194,6 +354,107 @@ public class ComponentNodeTabbedPaneUI extends BasicTabbedPaneUI {
     }
 
 
+    /**
+     * Determines whether the tabs are laid out in a single scrolling run.
+     */
+    private boolean isScrollingTabs(int tabPlacement) {
+        return tabPane.getTabLayoutPolicy() == JTabbedPane.SCROLL_TAB_LAYOUT
+                && (tabPlacement == JTabbedPane.TOP || tabPlacement == JTabbedPane.BOTTOM);
+    }
+
+
+    protected LayoutManager createLayoutManager() {
+        if (tabPane.getTabLayoutPolicy() == JTabbedPane.SCROLL_TAB_LAYOUT) {
+            // The rects may have been laid out by another layout
+            laidOutFirstTab = 0;
+            laidOutLastTab = Integer.MAX_VALUE;
+            laidOutSelectedTab = -1;
+            return new ScrollingTabbedPaneLayout();
+        }
+        return super.createLayoutManager();
+    }
+
+
+    protected void installListeners() {
+        super.installListeners();
+        scrollMouseListener = new MouseAdapter() {
+            public void mousePressed(MouseEvent e) {
+                if (quickJumpBounds.contains(e.getX(), e.getY()) && isScrollingTabs(tabPane.getTabPlacement())) {
+                    showQuickJumpList();
+                }
+            }
+
+
+            public void mouseWheelMoved(MouseWheelEvent e) {
+                if (tabRunBounds.contains(e.getX(), e.getY()) && isScrollingTabs(tabPane.getTabPlacement())) {
+                    scrollTabs(e.getWheelRotation());
+                }
+            }
+        };
+        tabPane.addMouseListener(scrollMouseListener);
+        tabPane.addMouseWheelListener(scrollMouseListener);
+    }
+
+
+    protected void uninstallListeners() {
+        tabPane.removeMouseListener(scrollMouseListener);
+        tabPane.removeMouseWheelListener(scrollMouseListener);
+        scrollMouseListener = null;
+        super.uninstallListeners();
+    }
+
+
+    /**
+     * Scrolls the visible window of tabs.
+     * @param delta The number of tabs to scroll by.  Negative values
+     * scroll towards the first tab.
+     */
+    private void scrollTabs(int delta) {
+        int first = Math.max(0, Math.min(firstVisibleTab + delta, tabPane.getTabCount() - 1));
+        if (first != firstVisibleTab) {
+            firstVisibleTab = first;
+            tabPane.revalidate();
+            tabPane.repaint();
+        }
+    }
+
+
+    /**
+     * Shows a list of all of the tabs below the quick jump button.  Selecting
+     * a tab in the list selects the tab, which scrolls it into view.  The
+     * list only asks the tabbed pane for the titles that it shows.
+     */
+    private void showQuickJumpList() {
+        final JList<String> list = new JList<>(new AbstractListModel<String>() {
+            public int getSize() {
+                return tabPane.getTabCount();
+            }
+
+
+            public String getElementAt(int index) {
+                return tabPane.getTitleAt(index);
+            }
+        });
+        list.setFont(tabPane.getFont());
+        list.setFixedCellHeight(TAB_HEIGHT);
+        list.setVisibleRowCount(Math.min(tabPane.getTabCount(), QUICK_JUMP_LIST_ROWS));
+        list.setSelectedIndex(tabPane.getSelectedIndex());
+        list.ensureIndexIsVisible(tabPane.getSelectedIndex());
+        final JPopupMenu popupMenu = new JPopupMenu();
+        list.addMouseListener(new MouseAdapter() {
+            public void mouseReleased(MouseEvent e) {
+                int index = list.locationToIndex(e.getPoint());
+                if (index != -1) {
+                    popupMenu.setVisible(false);
+                    tabPane.setSelectedIndex(index);
+                }
+            }
+        });
+        popupMenu.add(new JScrollPane(list));
+        popupMenu.show(tabPane, quickJumpBounds.x, quickJumpBounds.y + quickJumpBounds.height);
+    }
+
+
     protected void paintContentBorder(Graphics g, int tabPlacement, int selectedIndex) {
         //super.paintContentBorder(g, tabPlacement, selectedIndex);
     }
@@ -225,4 +486,165 @@ public class ComponentNodeTabbedPaneUI extends BasicTabbedPaneUI {
 //    protected int calculateTabWidth(int tabPlacement, int tabIndex, FontMetrics metrics) {
 //        return TAB_WIDTH;
 //    }
+
+
+    /**
+     * Lays out the tabs in a single run when they scroll.  Only the tabs in
+     * the visible window are measured and given bounds - the bounds of all
+     * other tabs are empty.
+     */
+    private class ScrollingTabbedPaneLayout extends TabbedPaneLayout {
+
+        protected int preferredTabAreaHeight(int tabPlacement, int width) {
+            if (!isScrollingTabs(tabPlacement)) {
+                return super.preferredTabAreaHeight(tabPlacement, width);
+            }
+            return calculateTabAreaHeight(tabPlacement, 1, getTabHeight(tabPlacement));
+        }
+
+
+        protected void calculateTabRects(int tabPlacement, int tabCount) {
+            if (!isScrollingTabs(tabPlacement)) {
+                super.calculateTabRects(tabPlacement, tabCount);
+                return;
+            }
+            Insets insets = tabPane.getInsets();
+            Insets areaInsets = getTabAreaInsets(tabPlacement);
+            int selectedIndex = tabPane.getSelectedIndex();
+            FontMetrics metrics = getFontMetrics();
+            maxTabHeight = getTabHeight(tabPlacement);
+            maxTabWidth = 0;
+            runCount = 0;
+            selectedRun = -1;
+            int x = insets.left + areaInsets.left;
+            int y;
+            if (tabPlacement == JTabbedPane.TOP) {
+                y = insets.top + areaInsets.top;
+            }
+            else {
+                y = tabPane.getHeight() - insets.bottom - areaInsets.bottom - maxTabHeight;
+            }
+            int available = tabPane.getWidth() - insets.right - areaInsets.right - x;
+            tabRunBounds.setBounds(x, y, Math.max(0, available), maxTabHeight);
+            quickJumpBounds.setBounds(0, 0, 0, 0);
+            if (tabCount == 0) {
+                clearTabRects(0, -1, tabCount);
+                return;
+            }
+            int first = Math.max(0, Math.min(firstVisibleTab, tabCount - 1));
+            // The window follows the selection when it changes, otherwise it
+            // stays where it was scrolled to
+            boolean followSelection = selectedIndex != laidOutSelectedTab;
+            first = getWindowStart(tabPlacement, metrics, first, selectedIndex, followSelection, available, tabCount);
+            int last = getLastFittingTab(tabPlacement, metrics, first, available, tabCount);
+            if (first > 0 || last < tabCount - 1) {
+                // Not all of the tabs fit, so make room for the quick jump button
+                available -= QUICK_JUMP_BUTTON_WIDTH;
+                first = getWindowStart(tabPlacement, metrics, first, selectedIndex, followSelection, available,
+                                       tabCount);
+                last = getLastFittingTab(tabPlacement, metrics, first, available, tabCount);
+                quickJumpBounds.setBounds(x + available, y, QUICK_JUMP_BUTTON_WIDTH, maxTabHeight);
+            }
+            clearTabRects(first, last, tabCount);
+            for (int i = first; i <= last; i++) {
+                int tabWidth = calculateTabWidth(tabPlacement, i, metrics);
+                rects[i].setBounds(x, y, tabWidth, maxTabHeight);
+                maxTabWidth = Math.max(maxTabWidth, tabWidth);
+                x += tabWidth;
+            }
+            runCount = 1;
+            tabRuns[0] = first;
+            if (selectedIndex >= first && selectedIndex <= last) {
+                selectedRun = 0;
+            }
+            firstVisibleTab = first;
+            laidOutFirstTab = first;
+            laidOutLastTab = last;
+            laidOutSelectedTab = selectedIndex;
+        }
+
+
+        private int getTabHeight(int tabPlacement) {
+            if (tabPane.getTabCount() == 0) {
+                return 0;
+            }
+            // All tabs have the same height
+            return calculateTabHeight(tabPlacement, 0, getFontMetrics().getHeight());
+        }
+
+
+        /**
+         * Gets the first tab of the visible window, making sure that the
+         * selected tab is visible if required, and that there isn't any
+         * unused space at the end of the run.
+         */
+        private int getWindowStart(int tabPlacement, FontMetrics metrics, int first, int selectedIndex,
+                                   boolean followSelection, int available, int tabCount) {
+            if (followSelection && selectedIndex != -1) {
+                if (selectedIndex < first) {
+                    first = selectedIndex;
+                }
+                else if (selectedIndex > getLastFittingTab(tabPlacement, metrics, first, available, tabCount)) {
+                    first = getFirstFittingTab(tabPlacement, metrics, selectedIndex, available);
+                }
+            }
+            int last = getLastFittingTab(tabPlacement, metrics, first, available, tabCount);
+            if (last == tabCount - 1) {
+                first = Math.min(first, getFirstFittingTab(tabPlacement, metrics, last, available));
+            }
+            return first;
+        }
+
+
+        /**
+         * Gets the last tab which fits in the run, starting from a given tab.  The
+         * given tab is always included, even if it doesn't fit.
+         */
+        private int getLastFittingTab(int tabPlacement, FontMetrics metrics, int first, int available, int tabCount) {
+            int width = calculateTabWidth(tabPlacement, first, metrics);
+            int last = first;
+            while (last + 1 < tabCount) {
+                width += calculateTabWidth(tabPlacement, last + 1, metrics);
+                if (width > available) {
+                    break;
+                }
+                last++;
+            }
+            return last;
+        }
+
+
+        /**
+         * Gets the first tab which fits in the run, ending at a given tab.  The
+         * given tab is always included, even if it doesn't fit.
+         */
+        private int getFirstFittingTab(int tabPlacement, FontMetrics metrics, int last, int available) {
+            int width = calculateTabWidth(tabPlacement, last, metrics);
+            int first = last;
+            while (first > 0) {
+                width += calculateTabWidth(tabPlacement, first - 1, metrics);
+                if (width > available) {
+                    break;
+                }
+                first--;
+            }
+            return first;
+        }
+
+
+        /**
+         * Empties the bounds of the tabs which were laid out by the last layout,
+         * but which aren't in the new window.
+         */
+        private void clearTabRects(int first, int last, int tabCount) {
+            int end = Math.min(laidOutLastTab, tabCount - 1);
+            for (int i = laidOutFirstTab; i <= end; i++) {
+                if (i < first || i > last) {
+                    rects[i].setBounds(0, 0, 0, 0);
+                }
+            }
+            laidOutFirstTab = 0;
+            laidOutLastTab = -1;
+        }
+    }
 }
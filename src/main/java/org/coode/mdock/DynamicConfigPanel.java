@@ -24,8 +24,11 @@ package org.coode.mdock;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.dnd.DragSource;
 import java.awt.event.*;
-import java.util.Arrays;
+import java.awt.image.BufferedImage;
+import java.util.*;
+import java.util.List;
 
 
 /**
@@ -44,9 +47,28 @@ import java.util.Arrays;
  */
 public class DynamicConfigPanel extends JPanel {
 
-    private JComponent component;
+    private static final int CENTRE_ZONE = 0;
+
+    private static final int TOP_ZONE = 1;
+
+    private static final int BOTTOM_ZONE = 2;
+
+    private static final int LEFT_ZONE = 3;
+
+    private static final int RIGHT_ZONE = 4;
 
-    private NodePanel nodePanel;
+    /**
+     * The size of the target that is painted at the mouse position
+     */
+    private static final int TARGET_SIZE = 15;
+
+    private static final Stroke STROKE = new BasicStroke(4.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    private static final Stroke THIN_STROKE = new BasicStroke(2.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
+
+    private static final Composite PREVIEW_COMPOSITE = AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f);
+
+    private JComponent component;
 
     private JComponent currentComponent;
 
@@ -54,16 +76,50 @@ public class DynamicConfigPanel extends JPanel {
 
     private Color lineColor = new Color(139, 178, 212);
 
+    private Point mousePoint;
+
+    /**
+     * The add mode for the zone of the node that the mouse is over
+     */
+    private AddMode hoverMode;
+
+    /**
+     * The drop zones of the node panels that were showing when this panel was
+     * activated.  A nested node panel comes after the panel that contains it.
+     */
+    private DropZoneMap[] dropZoneMaps;
+
+    /**
+     * A rendering of the current component, at the size of the last preview
+     */
+    private BufferedImage previewImage;
+
+    private boolean tabDraggingEnabled;
+
+    /**
+     * The listener which watches for tabs being dragged, which is only installed
+     * while tab dragging is enabled and this panel is displayable
+     */
+    private AWTEventListener tabDragListener;
+
+    /**
+     * The tabbed pane that a tab is being dragged from, the index of the tab,
+     * and the point at which the drag started
+     */
+    private JTabbedPane dragTabbedPane;
+
+    private int dragTabIndex;
+
+    private Point dragStartPoint;
+
     public DynamicConfigPanel(JComponent component) {
         this.component = component;
-        this.nodePanel = null;
         setOpaque(false);
 
 
         addMouseMotionListener(new MouseMotionAdapter() {
             public void mouseMoved(MouseEvent e) {
-                updateNodePanel();
-                repaint();
+                updateHover(e.getX(), e.getY());
             }
         });
 
@@ -75,106 +131,504 @@ public class DynamicConfigPanel extends JPanel {
     }
 
     private void handleMouseClicked(MouseEvent e) {
-        if(nodePanel == null) {
+        drop(e.getX(), e.getY());
+    }
+
+    /**
+     * Adds the current component at the specified point.  If the component is held by a
+     * component node then it is moved from that node, without being removed from the
+     * display, as part of the same edit.
+     */
+    private void drop(int x, int y) {
+        final AddMode mode = getAddMode(x, y);
+        if(mode == null) {
             return;
         }
         setVisible(false);
-        // Insert the new node
-        Point nodePanelPt = SwingUtilities.convertPoint(this, e.getPoint(), nodePanel);
-        Node n = Util.getDeepestNode(nodePanel.getRootNode(), nodePanel, nodePanelPt);
-        if(n == null) {
+        deactivate();
+        final JComponent component = currentComponent;
+        final String label = currentLabel;
+        currentComponent = null;
+        final ComponentNode sourceNode = ComponentNode.getComponentNode(component);
+        if(sourceNode == mode.getNode() && mode instanceof CentreAddMode) {
+            // The component would end up where it started
             return;
         }
-        AddMode mode = getAddMode(n, nodePanelPt);
-        mode.doAdd(currentComponent, currentLabel);
-        currentComponent = null;
-        nodePanel.rebuild();
+        if(sourceNode != null && sourceNode.getComponentCount() == 1 && isRemovedWith(mode.getNode(), sourceNode)) {
+            // The target only holds the component, so it would end up where it
+            // started - and the target would be gone by the time it was added
+            return;
+        }
+        final NodePanel nodePanel = mode.getNodePanel();
+        nodePanel.edit(new NodeEdit() {
+            public void edit(Node rootNode) {
+                if(sourceNode != null) {
+                    // The node panel holds the component until it is added
+                    sourceNode.removeForTransfer(component, nodePanel);
+                }
+                // Insert the new node
+                mode.doAdd(component, label);
+            }
+        });
+    }
+
+    /**
+     * Determines whether a node would be removed from the tree along with a
+     * component node which is removed because it has become empty.  This is the
+     * case for the component node itself, and for each ancestor whose only child
+     * would be removed.
+     */
+    private static boolean isRemovedWith(Node node, ComponentNode componentNode) {
+        for(Node curNode = componentNode; curNode != null; curNode = curNode.getParent()) {
+            if(curNode == node) {
+                return true;
+            }
+            SplitterNode parent = curNode.getParent();
+            if(parent == null || parent.getChildCount() != 1) {
+                return false;
+            }
+        }
+        return false;
     }
 
     public void setCurrentComponent(JComponent currentComponent, String label) {
         this.currentComponent = currentComponent;
         this.currentLabel = label;
+        flushPreviewImage();
+    }
+
+    /**
+     * Activates this panel so that a component which is held by a component
+     * node can be moved to another position.
+     * @param component The component to be moved.  Its label is retained.
+     */
+    public void activateMove(JComponent component) {
+        ComponentNode node = ComponentNode.getComponentNode(component);
+        if(node == null) {
+            throw new IllegalArgumentException("Component is not held by a component node!");
+        }
+        setCurrentComponent(component, node.getLabel(component));
+        activate();
     }
 
-    private void updateNodePanel() {
-        Container contentPane = getRootPane().getContentPane();
-        // Find the deepest node panel
-        Point pt = getMousePosition();
-        if(pt == null) {
+    /**
+     * Sets whether the tabs of the component nodes in the window can be dragged
+     * to move their components elsewhere.  When a tab is dragged, this panel is
+     * activated (see {@link #activateMove(JComponent)}) and the component is dropped
+     * where the mouse is released.  The mouse events are only watched while this
+     * panel is displayable, so a discarded window isn't kept alive by the toolkit.
+     */
+    public void setTabDraggingEnabled(boolean enabled) {
+        if(enabled == tabDraggingEnabled) {
             return;
         }
-        pt = SwingUtilities.convertPoint(this, pt, contentPane);
-        Component c = SwingUtilities.getDeepestComponentAt(contentPane, pt.x, pt.y);
-        if(c instanceof NodePanel) {
-            nodePanel = (NodePanel) c;
+        tabDraggingEnabled = enabled;
+        if(enabled) {
+            if(isDisplayable()) {
+                installTabDragListener();
+            }
+        }
+        else {
+            uninstallTabDragListener();
+        }
+    }
+
+    public boolean isTabDraggingEnabled() {
+        return tabDraggingEnabled;
+    }
+
+    public void addNotify() {
+        super.addNotify();
+        if(tabDraggingEnabled) {
+            installTabDragListener();
+        }
+    }
+
+    public void removeNotify() {
+        uninstallTabDragListener();
+        super.removeNotify();
+    }
+
+    private void installTabDragListener() {
+        if(tabDragListener != null) {
             return;
         }
-        NodePanel np  = (NodePanel) SwingUtilities.getAncestorOfClass(NodePanel.class, c);
-        if(np != null) {
-            nodePanel = np;
+        tabDragListener = new AWTEventListener() {
+            public void eventDispatched(AWTEvent event) {
+                handleTabDragEvent((MouseEvent) event);
+            }
+        };
+        Toolkit.getDefaultToolkit().addAWTEventListener(tabDragListener,
+                                                        AWTEvent.MOUSE_EVENT_MASK | AWTEvent.MOUSE_MOTION_EVENT_MASK);
+    }
+
+    private void uninstallTabDragListener() {
+        if(tabDragListener == null) {
+            return;
+        }
+        Toolkit.getDefaultToolkit().removeAWTEventListener(tabDragListener);
+        tabDragListener = null;
+        dragTabbedPane = null;
+    }
+
+    private void handleTabDragEvent(MouseEvent e) {
+        switch(e.getID()) {
+            case MouseEvent.MOUSE_PRESSED:
+                dragTabbedPane = null;
+                if(SwingUtilities.isLeftMouseButton(e) && e.getSource() instanceof JTabbedPane) {
+                    JTabbedPane tabbedPane = (JTabbedPane) e.getSource();
+                    // Only the tabs of component nodes in our window can be dragged
+                    if(tabbedPane.getClientProperty(ComponentNode.COMPONENT_NODE_PROPERTY) != null
+                            && SwingUtilities.getRootPane(tabbedPane) == component.getRootPane()) {
+                        int index = tabbedPane.indexAtLocation(e.getX(), e.getY());
+                        if(index != -1) {
+                            dragTabbedPane = tabbedPane;
+                            dragTabIndex = index;
+                            dragStartPoint = e.getPoint();
+                        }
+                    }
+                }
+                break;
+            case MouseEvent.MOUSE_DRAGGED:
+                if(dragTabbedPane == null || e.getSource() != dragTabbedPane) {
+                    return;
+                }
+                if(!isShowing()) {
+                    int threshold = DragSource.getDragThreshold();
+                    if(Math.abs(e.getX() - dragStartPoint.x) <= threshold && Math.abs(e.getY() - dragStartPoint.y) <= threshold) {
+                        return;
+                    }
+                    if(dragTabIndex >= dragTabbedPane.getTabCount()) {
+                        dragTabbedPane = null;
+                        return;
+                    }
+                    activateMove((JComponent) dragTabbedPane.getComponentAt(dragTabIndex));
+                }
+                // The tabbed pane receives the drag events, rather than this panel
+                Point pt = SwingUtilities.convertPoint(dragTabbedPane, e.getPoint(), this);
+                updateHover(pt.x, pt.y);
+                break;
+            case MouseEvent.MOUSE_RELEASED:
+                if(dragTabbedPane != null && e.getSource() == dragTabbedPane && isShowing()) {
+                    Point dropPoint = SwingUtilities.convertPoint(dragTabbedPane, e.getPoint(), this);
+                    dragTabbedPane = null;
+                    if(getAddMode(dropPoint.x, dropPoint.y) == null) {
+                        // Dropped somewhere other than a node panel
+                        setVisible(false);
+                        deactivate();
+                        currentComponent = null;
+                    }
+                    else {
+                        drop(dropPoint.x, dropPoint.y);
+                    }
+                }
+                dragTabbedPane = null;
+                break;
+        }
+    }
+
+    /**
+     * Updates the add mode for the position of the mouse.  Only the target and,
+     * if the mouse has moved into a different drop zone, the old and new highlights
+     * are repainted (the repaint manager coalesces these into their union).
+     * @param x The x position of the mouse in the coordinates of this panel.
+     * @param y The y position of the mouse in the coordinates of this panel.
+     */
+    private void updateHover(int x, int y) {
+        if(mousePoint == null) {
+            mousePoint = new Point(x, y);
+        }
+        else {
+            repaintTarget();
+            mousePoint.setLocation(x, y);
+        }
+        repaintTarget();
+        AddMode mode = getAddMode(x, y);
+        if(mode != hoverMode) {
+            if(hoverMode != null) {
+                repaint(hoverMode.getHighlightBounds());
+            }
+            hoverMode = mode;
+            if(hoverMode != null) {
+                repaint(hoverMode.getHighlightBounds());
+            }
+        }
+    }
+
+    private void repaintTarget() {
+        repaint(mousePoint.x - TARGET_SIZE / 2, mousePoint.y - TARGET_SIZE / 2, TARGET_SIZE, TARGET_SIZE);
+    }
+
+    /**
+     * Looks up the add mode for a point in the drop zone maps.  This doesn't allocate
+     * anything, and apart from finding the node under the point, which is a binary search
+     * at each level of the tree, it takes constant time.
+     * @return The add mode, or <code>null</code> if the point isn't over a node
+     */
+    private AddMode getAddMode(int x, int y) {
+        if(dropZoneMaps == null) {
+            return null;
+        }
+        for(int i = dropZoneMaps.length - 1; i >= 0; i--) {
+            DropZoneMap dropZoneMap = dropZoneMaps[i];
+            if(dropZoneMap.contains(x, y)) {
+                return dropZoneMap.getAddMode(x, y);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets an image of the current component at the specified size.  The component
+     * is only laid out and painted when the size differs from that of the last
+     * image, so moving between drop zones of the same size just reuses the image.
+     * @return The image, or <code>null</code> if there is nothing to preview
+     */
+    private BufferedImage getPreviewImage(int width, int height) {
+        if(currentComponent == null) {
+            return null;
+        }
+        boolean showing = currentComponent.isShowing();
+        if(showing) {
+            // A component that is being moved is rendered as it is, rather than being
+            // resized, and the image is scaled to the size of the preview
+            width = currentComponent.getWidth();
+            height = currentComponent.getHeight();
+        }
+        if(width <= 0 || height <= 0) {
+            return null;
+        }
+        if(previewImage != null && previewImage.getWidth() == width && previewImage.getHeight() == height) {
+            return previewImage;
+        }
+        flushPreviewImage();
+        GraphicsConfiguration gc = getGraphicsConfiguration();
+        if(gc != null) {
+            // Compatible images can be cached in video memory
+            previewImage = gc.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+        }
+        else {
+            previewImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        }
+        Graphics2D g2 = previewImage.createGraphics();
+        try {
+            if(showing) {
+                currentComponent.paint(g2);
+            }
+            else {
+                currentComponent.setBounds(0, 0, width, height);
+                currentComponent.validate();
+                SwingUtilities.paintComponent(g2, currentComponent, this, 0, 0, width, height);
+            }
+        }
+        finally {
+            g2.dispose();
+        }
+        return previewImage;
+    }
+
+    private void flushPreviewImage() {
+        if(previewImage != null) {
+            previewImage.flush();
+            previewImage = null;
         }
     }
 
 
+    /**
+     * Shows this panel over the component, ready for the current component to be
+     * dropped.  The layout of the node panels is frozen whilst this panel is showing,
+     * so the drop zones of all of the showing node panels are worked out up front.
+     */
     public void activate() {
         if(currentComponent == null) {
             throw new IllegalStateException("No component is set!");
         }
-        if(currentComponent.getParent() != null) {
+        if(currentComponent.getParent() != null && ComponentNode.getComponentNode(currentComponent) == null) {
             throw new IllegalStateException("Current component already has a parent!");
         }
-        component.getRootPane().setGlassPane(this);
+        deactivate();
+        JRootPane rootPane = component.getRootPane();
+        rootPane.setGlassPane(this);
+        List<DropZoneMap> maps = new ArrayList<DropZoneMap>();
+        addDropZoneMaps(rootPane.getContentPane(), maps);
+        dropZoneMaps = maps.toArray(new DropZoneMap[maps.size()]);
         setVisible(true);
     }
 
+    private void deactivate() {
+        mousePoint = null;
+        hoverMode = null;
+        dropZoneMaps = null;
+        flushPreviewImage();
+    }
+
+    private void addDropZoneMaps(Container container, List<DropZoneMap> maps) {
+        for(Component c : container.getComponents()) {
+            if(!c.isShowing()) {
+                continue;
+            }
+            if(c instanceof NodePanel) {
+                maps.add(new DropZoneMap((NodePanel) c));
+            }
+            if(c instanceof Container) {
+                addDropZoneMaps((Container) c, maps);
+            }
+        }
+    }
+
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
         Graphics2D g2 = (Graphics2D) g;
         g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-        Point pt = getMousePosition();
+        Point pt = mousePoint;
         // Paint target - this can be quite useful in a complex UI (or on a slow machine),
         // where repaints are slow.
         if (pt != null) {
             g2.fillOval(pt.x - 4, pt.y - 4, 8, 8);
             g2.drawOval(pt.x - 6, pt.y - 6, 12, 12);
         }
-        Point mousePos = getMousePosition();
-        if (mousePos != null && nodePanel != null) {
+        if (hoverMode != null) {
             // Draw a box round the deepest node that the mouse is over
-            mousePos = SwingUtilities.convertPoint(this, mousePos, nodePanel);
-            Node n = Util.getDeepestNode(nodePanel.getRootNode(), nodePanel, mousePos);
-            if (n != null) {
-                AddMode addMode = getAddMode(n, mousePos);
-                addMode.paintRect(g);
-            }
+            hoverMode.paintRect(g);
         }
     }
 
-    private AddMode getAddMode(Node node, Point mousePoint) {
-        if(node.getParent() == null) {
-            // Root node
-            return new CentreAddMode(node);
+
+    //////////////////////////////////////////////////////////////////////////////////////////////////////////
+    //
+    // Drop zones
+
+
+    /**
+     * The drop zones of every visible node in a node panel
+     */
+    private class DropZoneMap {
+
+        private NodePanel nodePanel;
+
+        private LayoutGeometry geometry;
+
+        /**
+         * The visible bounds of the node panel, in the coordinates of this panel
+         */
+        private Rectangle visibleBounds;
+
+        /**
+         * The offset of the node panel from this panel
+         */
+        private int xOffset;
+
+        private int yOffset;
+
+        private Map<Node, DropZones> dropZones = new IdentityHashMap<Node, DropZones>();
+
+        public DropZoneMap(NodePanel nodePanel) {
+            this.nodePanel = nodePanel;
+            geometry = nodePanel.getRootNode().getLayoutGeometry();
+            Point offset = SwingUtilities.convertPoint(nodePanel, 0, 0, DynamicConfigPanel.this);
+            xOffset = offset.x;
+            yOffset = offset.y;
+            visibleBounds = nodePanel.getVisibleRect();
+            visibleBounds.translate(xOffset, yOffset);
+            addDropZones(nodePanel.getRootNode());
         }
-        Rectangle bounds = Util.getBounds(node, nodePanel, false);
-//        bounds = SwingUtilities.convertRectangle(nodePanel, bounds, this);
-        bounds.grow(-6, -6);
-        int xMargin = (int) (bounds.width * 0.3);
-        int yMargin = (int) (bounds.height * 0.3);
 
-        if(mousePoint.y < (bounds.y + yMargin)) {
-            return new TopAddMode(node);
+        private void addDropZones(Node node) {
+            if(!geometry.contains(node)) {
+                return;
+            }
+            Rectangle bounds = Util.getBounds(geometry, node, nodePanel, false);
+            bounds.translate(xOffset, yOffset);
+            dropZones.put(node, new DropZones(nodePanel, node, bounds));
+            if(node instanceof SplitterNode) {
+                for(Node child : ((SplitterNode) node).getVisibleChildren()) {
+                    addDropZones(child);
+                }
+            }
         }
-        else if(mousePoint.y > bounds.y + bounds.height - yMargin) {
-            return new BottomAddMode(node);
+
+        public boolean contains(int x, int y) {
+            return visibleBounds.contains(x, y);
         }
-        else if(mousePoint.x < bounds.x + xMargin) {
-            return new LeftAddMode(node);
+
+        public AddMode getAddMode(int x, int y) {
+            Node node = geometry.getDeepestNode(nodePanel.getRootNode(), x - xOffset, y - yOffset,
+                                                nodePanel.getWidth(), nodePanel.getHeight());
+            if(node == null) {
+                return null;
+            }
+            DropZones zones = dropZones.get(node);
+            if(zones == null) {
+                return null;
+            }
+            return zones.getAddMode(x, y);
         }
-        else if(mousePoint.x > bounds.x + bounds.width - xMargin) {
-            return new RightAddMode(node);
+    }
+
+
+    /**
+     * The add modes for the zones of a node
+     */
+    private class DropZones {
+
+        /**
+         * The inner bounds of the node, in the coordinates of this panel
+         */
+        private int x;
+
+        private int y;
+
+        private int width;
+
+        private int height;
+
+        private int xMargin;
+
+        private int yMargin;
+
+        private AddMode[] addModes;
+
+        public DropZones(NodePanel nodePanel, Node node, Rectangle bounds) {
+            x = bounds.x + 6;
+            y = bounds.y + 6;
+            width = bounds.width - 12;
+            height = bounds.height - 12;
+            xMargin = (int) (width * 0.3);
+            yMargin = (int) (height * 0.3);
+            if(node.getParent() == null) {
+                // The root node can only be added to
+                addModes = new AddMode[]{new CentreAddMode(nodePanel, node, bounds)};
+            }
+            else {
+                addModes = new AddMode[5];
+                addModes[CENTRE_ZONE] = new CentreAddMode(nodePanel, node, bounds);
+                addModes[TOP_ZONE] = new TopAddMode(nodePanel, node, bounds);
+                addModes[BOTTOM_ZONE] = new BottomAddMode(nodePanel, node, bounds);
+                addModes[LEFT_ZONE] = new LeftAddMode(nodePanel, node, bounds);
+                addModes[RIGHT_ZONE] = new RightAddMode(nodePanel, node, bounds);
+            }
         }
-        else {
-            return new CentreAddMode(node);
+
+        public AddMode getAddMode(int mouseX, int mouseY) {
+            if(addModes.length == 1) {
+                return addModes[CENTRE_ZONE];
+            }
+            if(mouseY < (y + yMargin)) {
+                return addModes[TOP_ZONE];
+            }
+            else if(mouseY > y + height - yMargin) {
+                return addModes[BOTTOM_ZONE];
+            }
+            else if(mouseX < x + xMargin) {
+                return addModes[LEFT_ZONE];
+            }
+            else if(mouseX > x + width - xMargin) {
+                return addModes[RIGHT_ZONE];
+            }
+            else {
+                return addModes[CENTRE_ZONE];
+            }
         }
     }
 
@@ -186,26 +640,53 @@ public class DynamicConfigPanel extends JPanel {
 
     private abstract class AddMode {
 
-        public final Stroke stroke = new BasicStroke(4.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
-        public final Stroke thinStroke = new BasicStroke(2.0f, BasicStroke.CAP_ROUND, BasicStroke.JOIN_ROUND);
-
         public static final int ARROW_DIM = 20;
 
+        private NodePanel nodePanel;
+
         private Node node;
 
         private Rectangle bounds;
 
+        private Rectangle highlightBounds;
 
-        public AddMode(Node node) {
+
+        public AddMode(NodePanel nodePanel, Node node, Rectangle bounds) {
+            this.nodePanel = nodePanel;
             this.node = node;
-            bounds = Util.getBounds(node, nodePanel, false);
-            bounds = SwingUtilities.convertRectangle(nodePanel, bounds, DynamicConfigPanel.this);
+            this.bounds = bounds;
+            highlightBounds = new Rectangle(bounds);
+            // Allow for the width of the stroke
+            highlightBounds.grow(3, 3);
+        }
+
+        public NodePanel getNodePanel() {
+            return nodePanel;
         }
 
         protected Node getNode() {
             return node;
         }
 
+        /**
+         * Creates a node for the component that is being added.  The node's component is
+         * added to the node panel straight away (rather than when the panel is rebuilt),
+         * so that a component which is being moved can be transferred into it without
+         * being removed from the display.
+         */
+        protected ComponentNode createComponentNode() {
+            ComponentNode cn = new ComponentNode();
+            nodePanel.add(cn.getComponent());
+            return cn;
+        }
+
+        /**
+         * Gets the area of the panel that is painted by {@link #paintRect(Graphics)}
+         */
+        public Rectangle getHighlightBounds() {
+            return highlightBounds;
+        }
+
         public abstract void doAdd(JComponent component, String label);
 
         public abstract Rectangle getRect();
@@ -224,19 +705,20 @@ public class DynamicConfigPanel extends JPanel {
             Stroke oldStroke = ((Graphics2D) g).getStroke();
 
             Graphics2D g2 = ((Graphics2D) g);
-            g2.setStroke(stroke);
+            g2.setStroke(STROKE);
             Color oldColor = g.getColor();
             g.setColor(lineColor);
             Rectangle smallBounds = getInnerBounds();
             g.drawRect(smallBounds.x, smallBounds.y, smallBounds.width, smallBounds.height);
             Rectangle posRect = getRect();
             posRect.grow(-6, -6);
-            currentComponent.setBounds(posRect);
-            currentComponent.validate();
-            Composite oldComp = g2.getComposite();
-            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, 0.5f));
-            SwingUtilities.paintComponent(g, currentComponent, DynamicConfigPanel.this, posRect);
-            g2.setComposite(oldComp);
+            BufferedImage preview = getPreviewImage(posRect.width, posRect.height);
+            if (preview != null) {
+                Composite oldComp = g2.getComposite();
+                g2.setComposite(PREVIEW_COMPOSITE);
+                g2.drawImage(preview, posRect.x, posRect.y, posRect.width, posRect.height, null);
+                g2.setComposite(oldComp);
+            }
             g2.setStroke(oldStroke);
             g.drawRect(posRect.x, posRect.y, posRect.width, posRect.height);
             g.setColor(oldColor);
@@ -247,14 +729,14 @@ public class DynamicConfigPanel extends JPanel {
 
     private class TopAddMode extends AddMode {
 
-        public TopAddMode(Node node) {
-            super(node);
+        public TopAddMode(NodePanel nodePanel, Node node, Rectangle bounds) {
+            super(nodePanel, node, bounds);
         }
 
         public void doAdd(JComponent component, String label) {
             SplitterNode parentNode = getNode().getParent();
             // Create the new node
-            ComponentNode cn = new ComponentNode();
+            ComponentNode cn = createComponentNode();
             cn.add(component, label);
             // Now add the new node before the existing node. We require a horizontal
             // splitter!
@@ -270,8 +752,8 @@ public class DynamicConfigPanel extends JPanel {
 
     private class BottomAddMode extends AddMode {
 
-        public BottomAddMode(Node node) {
-            super(node);
+        public BottomAddMode(NodePanel nodePanel, Node node, Rectangle bounds) {
+            super(nodePanel, node, bounds);
         }
 
 
@@ -284,7 +766,7 @@ public class DynamicConfigPanel extends JPanel {
 
         public void doAdd(JComponent component, String label) {
             SplitterNode parentNode = getNode().getParent();
-            ComponentNode cn = new ComponentNode();
+            ComponentNode cn = createComponentNode();
             cn.add(component, label);
             parentNode.insertNodeAfter(cn, getNode(), SplitterNode.HORIZONTAL_SPLITTER);
 
@@ -293,8 +775,8 @@ public class DynamicConfigPanel extends JPanel {
 
     private class LeftAddMode extends AddMode {
 
-        public LeftAddMode(Node node) {
-            super(node);
+        public LeftAddMode(NodePanel nodePanel, Node node, Rectangle bounds) {
+            super(nodePanel, node, bounds);
         }
 
         public Rectangle getRect() {
@@ -304,7 +786,7 @@ public class DynamicConfigPanel extends JPanel {
         }
 
         public void doAdd(JComponent component, String label) {
-            ComponentNode cn = new ComponentNode();
+            ComponentNode cn = createComponentNode();
             cn.add(component, label);
             SplitterNode parentNode = getNode().getParent();
             parentNode.insertNodeBefore(cn, getNode(), SplitterNode.VERTICAL_SPLITTER);
@@ -314,13 +796,13 @@ public class DynamicConfigPanel extends JPanel {
 
     private class RightAddMode extends AddMode {
 
-        public RightAddMode(Node node) {
-            super(node);
+        public RightAddMode(NodePanel nodePanel, Node node, Rectangle bounds) {
+            super(nodePanel, node, bounds);
         }
 
         public void doAdd(JComponent component, String label) {
             SplitterNode parentNode = getNode().getParent();
-            ComponentNode cn = new ComponentNode();
+            ComponentNode cn = createComponentNode();
             cn.add(component, label);
             parentNode.insertNodeAfter(cn, getNode(), SplitterNode.VERTICAL_SPLITTER);
         }
@@ -335,8 +817,8 @@ public class DynamicConfigPanel extends JPanel {
 
     private class CentreAddMode extends AddMode {
 
-        public CentreAddMode(Node node) {
-            super(node);
+        public CentreAddMode(NodePanel nodePanel, Node node, Rectangle bounds) {
+            super(nodePanel, node, bounds);
         }
 
         public void doAdd(JComponent component, String label) {
@@ -344,7 +826,7 @@ public class DynamicConfigPanel extends JPanel {
                 ((ComponentNode) getNode()).add(component, label);
             }
             else {
-                ComponentNode cn = new ComponentNode();
+                ComponentNode cn = createComponentNode();
                 cn.add(component, label);
                 ((SplitterNode) getNode()).addChild(cn, 0, 1.0);
             }
@@ -0,0 +1,189 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import javax.swing.*;
+import java.util.*;
+import java.util.List;
+
+
+/**
+ * Limits the number of live (realised) components held by the component nodes which
+ * use the policy (see {@link ComponentNode#setHibernationPolicy(HibernationPolicy)}).
+ * When there are more live components than the maximum, the least recently used
+ * components in unselected tabs are hibernated: the {@link ComponentPropertiesFactory}
+ * records the properties of a component, the component is discarded, and a
+ * {@link PlaceholderComponent} takes its place.  The {@link ComponentFactory} recreates
+ * the component from its properties when its tab is next selected.
+ * <p>
+ * A component is used when it is added to a node, and when its tab is selected.  Components
+ * which must stay live, for example because their state can't be captured by their
+ * properties, can be pinned.  A policy may be shared by any number of nodes, in which case
+ * the maximum applies to the components of all of them.
+ */
+public class HibernationPolicy {
+
+    private ComponentPropertiesFactory propertiesFactory;
+
+    private ComponentFactory componentFactory;
+
+    private int maxLiveComponents;
+
+    /**
+     * The live components, and the nodes that hold them, least recently used first
+     */
+    private Map<JComponent, ComponentNode> liveComponents;
+
+    private Set<JComponent> pinnedComponents;
+
+    private boolean hibernating;
+
+
+    /**
+     * Creates a hibernation policy.
+     * @param propertiesFactory The factory which provides the properties of a component
+     * that is being hibernated.
+     * @param componentFactory The factory which recreates a hibernated component from
+     * its properties.
+     * @param maxLiveComponents The maximum number of live components.
+     */
+    public HibernationPolicy(ComponentPropertiesFactory propertiesFactory, ComponentFactory componentFactory,
+                             int maxLiveComponents) {
+        if (maxLiveComponents < 1) {
+            throw new IllegalArgumentException("The maximum number of live components must be at least 1");
+        }
+        this.propertiesFactory = propertiesFactory;
+        this.componentFactory = componentFactory;
+        this.maxLiveComponents = maxLiveComponents;
+        liveComponents = new LinkedHashMap<JComponent, ComponentNode>(16, 0.75f, true);
+        // Pinning a component doesn't keep it alive once it has been removed
+        pinnedComponents = Collections.newSetFromMap(new WeakHashMap<JComponent, Boolean>());
+    }
+
+
+    public int getMaxLiveComponents() {
+        return maxLiveComponents;
+    }
+
+
+    /**
+     * Sets the maximum number of live components.  If there are more than this
+     * number of live components then components are hibernated straight away.
+     * @param maxLiveComponents The maximum number of live components.
+     */
+    public void setMaxLiveComponents(int maxLiveComponents) {
+        if (maxLiveComponents < 1) {
+            throw new IllegalArgumentException("The maximum number of live components must be at least 1");
+        }
+        this.maxLiveComponents = maxLiveComponents;
+        hibernateExcessComponents();
+    }
+
+
+    /**
+     * Gets the number of live components held by the nodes which use this policy.
+     * Pinned components and components which can't currently be hibernated
+     * (e.g. because they are showing) are included.
+     * @return The number of live components
+     */
+    public int getLiveComponentCount() {
+        return liveComponents.size();
+    }
+
+
+    /**
+     * Pins or unpins a component.  A pinned component is never hibernated.
+     * @param component The component
+     * @param pinned <code>true</code> if the component should be pinned
+     */
+    public void setPinned(JComponent component, boolean pinned) {
+        if (pinned) {
+            pinnedComponents.add(component);
+        }
+        else {
+            pinnedComponents.remove(component);
+            hibernateExcessComponents();
+        }
+    }
+
+
+    public boolean isPinned(JComponent component) {
+        return pinnedComponents.contains(component);
+    }
+
+
+    PlaceholderComponent createPlaceholder(JComponent component) {
+        return new PlaceholderComponent(componentFactory, propertiesFactory.getProperties(component));
+    }
+
+
+    /**
+     * Records that a live component has been used (added to a node, or brought to the front).
+     */
+    void componentUsed(ComponentNode node, JComponent component) {
+        liveComponents.put(component, node);
+        hibernateExcessComponents();
+    }
+
+
+    /**
+     * Records that a component is no longer live, or is no longer held by a node.
+     */
+    void componentReleased(JComponent component) {
+        liveComponents.remove(component);
+    }
+
+
+    private void hibernateExcessComponents() {
+        if (hibernating) {
+            return;
+        }
+        int excess = liveComponents.size() - maxLiveComponents;
+        if (excess <= 0) {
+            return;
+        }
+        // Find the least recently used components which can be hibernated.  They
+        // are only hibernated once they've all been found, because hibernating a
+        // component changes the map.
+        List<Map.Entry<JComponent, ComponentNode>> victims = new ArrayList<Map.Entry<JComponent, ComponentNode>>();
+        // The most recently used component is never hibernated
+        int candidates = liveComponents.size() - 1;
+        for (Map.Entry<JComponent, ComponentNode> entry : liveComponents.entrySet()) {
+            if (victims.size() == excess || candidates-- == 0) {
+                break;
+            }
+            if (!isPinned(entry.getKey()) && entry.getValue().canHibernate(entry.getKey())) {
+                victims.add(entry);
+            }
+        }
+        hibernating = true;
+        try {
+            for (Map.Entry<JComponent, ComponentNode> victim : victims) {
+                victim.getValue().hibernate(victim.getKey());
+            }
+        }
+        finally {
+            hibernating = false;
+        }
+    }
+}
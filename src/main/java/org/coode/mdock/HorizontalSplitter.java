@@ -50,24 +50,31 @@ public class HorizontalSplitter extends Splitter {
 
     public void resetBounds() {
         // Set the bounds
-        int x = Util.getX(getChild1(), getParent(), false) + SPLITTER_WIDTH / 2 + 1;
-        int y = Util.getY(getChild1(), getParent(), false) - SPLITTER_WIDTH / 2 + 1;
-        int w = Util.getWidth(getChild1(), getParent(), false) - SPLITTER_WIDTH - 2;
+        Rectangle childBounds = Util.getBounds(getChild1(), getParent(), false);
+        int x = childBounds.x + LENGTH_OFFSET;
+        int y = childBounds.y - BOUNDARY_OFFSET;
+        int w = childBounds.width - SPLITTER_WIDTH - 2;
         int h = Splitter.SPLITTER_WIDTH - 2;
         setBounds(x, y, w, h);
     }
 
     public Point getMaxLocation() {
-        int x = Util.getX(getChild1(), getParent(), false) + SPLITTER_WIDTH / 2;
-        int y = Util.getY(getChild1(), getParent(), false) - SPLITTER_WIDTH;
-        int h = Util.getHeight(getChild1(), getParent(), false);
-        return new Point(x, y + h);
+        LayoutGeometry geometry = getNode().getLayoutGeometry();
+        int x = Util.getX(geometry, getChild1(), getParent(), false) + LENGTH_OFFSET;
+        // The boundary can move down until child1 is its minimum height
+        int bottom = Util.getY(geometry, getChild1(), getParent(), false)
+                + Util.getHeight(geometry, getChild1(), getParent(), false);
+        int boundary = bottom - Util.getMinimumSize(getChild1()).height;
+        return new Point(x, boundary - BOUNDARY_OFFSET);
     }
 
     public Point getMinLocation() {
-        int x = Util.getX(getChild0(), getParent(), false) + SPLITTER_WIDTH / 2;
-        int y = Util.getY(getChild0(), getParent(), false);
-        return new Point(x, y);
+        LayoutGeometry geometry = getNode().getLayoutGeometry();
+        int x = Util.getX(geometry, getChild0(), getParent(), false) + LENGTH_OFFSET;
+        // The boundary can move up until child0 is its minimum height
+        int top = Util.getY(geometry, getChild0(), getParent(), false);
+        int boundary = top + Util.getMinimumSize(getChild0()).height;
+        return new Point(x, boundary - BOUNDARY_OFFSET);
     }
 
     protected int getSpan(Node child, Component parent, boolean includingSplitter) {
@@ -45,23 +45,9 @@ public class HorizontalSplitterNode extends SplitterNode {
         super(children, splits);
     }
 
-    protected double getGloballyNormalisedHeight(Node child) {
-        // We affect the height of our children
-        return getGloballyNormalisedHeight() * getNormalisedSplit(child);
-    }
 
-    public double getGloballyNormalisedYLocation(Node child) {
-        // We affect the y location of our children
-        double yLoc = getGloballyNormalisedYLocation();
-        for(Node curChild : getVisibleChildren()) {
-            if(curChild == child) {
-                return yLoc;
-            }
-            else {
-                yLoc += getGloballyNormalisedHeight(curChild);
-            }
-        }
-        return 0.0;
+    public HorizontalSplitterNode(List<? extends Node> children, double[] splits) {
+        super(children, splits);
     }
 
     public boolean isSplitterDirection(int direction) {
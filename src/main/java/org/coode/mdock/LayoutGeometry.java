@@ -0,0 +1,638 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import java.util.*;
+
+
+/**
+ * A snapshot of the globally normalised geometry of every visible node in a
+ * node tree.  The snapshot is computed in a single top-down pass from the root
+ * node, and is cached by the root of the tree until the tree changes (see
+ * {@link Node#getLayoutGeometry()}).  Nodes which are not visible, or which are
+ * not part of the tree, have an empty region.
+ * <p>
+ * Structural changes to the tree cause the snapshot to be discarded.  Changes to
+ * the splits of a splitter node only cause the subtree below that node to be
+ * recomputed, and the nodes whose regions actually changed are recorded so that
+ * a layout can re-bound just those nodes (see {@link #takeChangedNodes()}).
+ * <p>
+ * The geometry also holds the pixel bounds of each node for the last few container
+ * sizes that it has been queried at, so that measuring the tree at one size doesn't
+ * throw away the bounds of a layout at another size.  Changes to the splits bring
+ * the bounds for every cached size up to date.  The bounds are computed in integer
+ * arithmetic: the pixel span of a splitter node is divided up amongst its visible
+ * children using largest remainder allocation, so that the children tile their
+ * parent exactly, without overlaps or gaps.
+ */
+public class LayoutGeometry {
+
+    private final Node rootNode;
+
+    private final Map<Node, Region> regions;
+
+    /**
+     * Splitter nodes whose splits have changed since the
+     * geometry was last brought up to date.
+     */
+    private final List<SplitterNode> pendingNodes;
+
+    /**
+     * Nodes whose regions have changed since the changes were last taken.
+     */
+    private final Set<Node> changedNodes;
+
+    /**
+     * The maximum number of container sizes that pixel bounds are held for
+     */
+    private static final int MAX_PIXEL_SIZES = 4;
+
+    /**
+     * The pixel bounds for each container size, most recently used first.
+     */
+    private final List<PixelBounds> pixelBounds;
+
+    /**
+     * Scratch space for allocating pixels to the children of a splitter node
+     */
+    private int[] allocatedPixels = new int[8];
+
+    private double[] remainders = new double[8];
+
+
+    LayoutGeometry(Node rootNode) {
+        this.rootNode = rootNode;
+        regions = new IdentityHashMap<Node, Region>();
+        pendingNodes = new ArrayList<SplitterNode>();
+        changedNodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        pixelBounds = new ArrayList<PixelBounds>(MAX_PIXEL_SIZES);
+        // The root node, by definition, occupies the whole space
+        Region rootRegion = new Region();
+        rootRegion.set(0.0, 0.0, 1.0, 1.0);
+        regions.put(rootNode, rootRegion);
+        if (rootNode instanceof SplitterNode) {
+            layoutChildren((SplitterNode) rootNode, rootRegion, true);
+        }
+    }
+
+
+    /**
+     * Gets the root node of the tree that this geometry describes.
+     * @return The root node
+     */
+    public Node getRootNode() {
+        return rootNode;
+    }
+
+
+    /**
+     * Determines whether this geometry holds a region for the specified node.
+     * @param node The node
+     * @return <code>true</code> if the node is the root node or a visible descendant
+     * of the root node, otherwise <code>false</code>.
+     */
+    public boolean contains(Node node) {
+        return getRegion(node) != null;
+    }
+
+
+    public double getX(Node node) {
+        Region region = getRegion(node);
+        return region != null ? region.x : 0.0;
+    }
+
+
+    public double getY(Node node) {
+        Region region = getRegion(node);
+        return region != null ? region.y : 0.0;
+    }
+
+
+    public double getWidth(Node node) {
+        Region region = getRegion(node);
+        return region != null ? region.width : 0.0;
+    }
+
+
+    public double getHeight(Node node) {
+        Region region = getRegion(node);
+        return region != null ? region.height : 0.0;
+    }
+
+
+    /**
+     * Gets the x coordinate, in pixels, of a node which is laid out in a
+     * container of the specified size.
+     * @param node The node
+     * @param width The width of the container
+     * @param height The height of the container
+     * @return The x coordinate, or 0 if the node isn't visible.
+     */
+    public int getPixelX(Node node, int width, int height) {
+        PixelRegion region = getPixelRegion(node, width, height);
+        return region != null ? region.x : 0;
+    }
+
+
+    public int getPixelY(Node node, int width, int height) {
+        PixelRegion region = getPixelRegion(node, width, height);
+        return region != null ? region.y : 0;
+    }
+
+
+    public int getPixelWidth(Node node, int width, int height) {
+        PixelRegion region = getPixelRegion(node, width, height);
+        return region != null ? region.width : 0;
+    }
+
+
+    public int getPixelHeight(Node node, int width, int height) {
+        PixelRegion region = getPixelRegion(node, width, height);
+        return region != null ? region.height : 0;
+    }
+
+
+    /**
+     * Gets the deepest visible node, within the subtree rooted at the specified
+     * node, which contains the specified point.  At each level the child is found
+     * by a binary search over the offsets of the visible children, so a query
+     * costs O(depth * log(children)) and doesn't allocate any objects.
+     * @param node The node at the root of the subtree to be searched.
+     * @param x The globally normalised x coordinate of the point.
+     * @param y The globally normalised y coordinate of the point.
+     * @return The deepest node, or <code>null</code> if the point does not lie
+     * within the specified node.
+     */
+    public Node getDeepestNode(Node node, double x, double y) {
+        return getDeepestNode(node, x, y, false);
+    }
+
+
+    /**
+     * Gets the deepest visible splitter node, within the subtree rooted at the
+     * specified node, which contains the specified point.
+     * @param node The node at the root of the subtree to be searched.
+     * @param x The globally normalised x coordinate of the point.
+     * @param y The globally normalised y coordinate of the point.
+     * @return The deepest splitter node, or <code>null</code> if the point does
+     * not lie within the specified node.
+     */
+    public SplitterNode getDeepestSplitterNode(SplitterNode node, double x, double y) {
+        return (SplitterNode) getDeepestNode(node, x, y, true);
+    }
+
+
+    private Node getDeepestNode(Node node, double x, double y, boolean splitterNodesOnly) {
+        Region region = getRegion(node);
+        if (region == null || !region.contains(x, y)) {
+            return null;
+        }
+        while (node instanceof SplitterNode) {
+            SplitterNode splitterNode = (SplitterNode) node;
+            double span = splitterNode.getChildSpan();
+            double position;
+            if (splitterNode.isSplitterDirection(SplitterNode.HORIZONTAL_SPLITTER)) {
+                position = (y - region.y) / region.height;
+            }
+            else {
+                position = (x - region.x) / region.width;
+            }
+            Node child = splitterNode.getVisibleChildAt(position * span);
+            if (child == null || (splitterNodesOnly && !(child instanceof SplitterNode))) {
+                break;
+            }
+            node = child;
+            region = regions.get(child);
+        }
+        return node;
+    }
+
+
+    /**
+     * Gets the deepest visible node, within the subtree rooted at the specified node,
+     * whose pixel bounds contain the specified point.  The pixel bounds of the children
+     * of a splitter node are contiguous, so the child is found by a binary search over
+     * the visible children.  This agrees exactly with the pixel bounds of the nodes,
+     * and doesn't allocate any objects.
+     * @param node The node at the root of the subtree to be searched.
+     * @param x The x coordinate of the point, in pixels.
+     * @param y The y coordinate of the point, in pixels.
+     * @param width The width of the container that the tree is laid out in.
+     * @param height The height of the container that the tree is laid out in.
+     * @return The deepest node, or <code>null</code> if the point doesn't lie within
+     * the specified node.
+     */
+    public Node getDeepestNode(Node node, int x, int y, int width, int height) {
+        return getDeepestNode(node, x, y, width, height, false);
+    }
+
+
+    public SplitterNode getDeepestSplitterNode(SplitterNode node, int x, int y, int width, int height) {
+        return (SplitterNode) getDeepestNode(node, x, y, width, height, true);
+    }
+
+
+    private Node getDeepestNode(Node node, int x, int y, int width, int height, boolean splitterNodesOnly) {
+        Map<Node, PixelRegion> pixelRegions = getPixelBounds(width, height).regions;
+        PixelRegion region = pixelRegions.get(node);
+        if (region == null || !region.contains(x, y)) {
+            return null;
+        }
+        while (node instanceof SplitterNode) {
+            SplitterNode splitterNode = (SplitterNode) node;
+            boolean horizontal = splitterNode.isSplitterDirection(SplitterNode.HORIZONTAL_SPLITTER);
+            int position = horizontal ? y : x;
+            List<Node> visibleChildren = splitterNode.getVisibleChildren();
+            if (visibleChildren.isEmpty()) {
+                break;
+            }
+            // Find the last child that starts at or before the position
+            int low = 0;
+            int high = visibleChildren.size() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                PixelRegion midRegion = pixelRegions.get(visibleChildren.get(mid));
+                if ((horizontal ? midRegion.y : midRegion.x) <= position) {
+                    low = mid;
+                }
+                else {
+                    high = mid - 1;
+                }
+            }
+            Node child = visibleChildren.get(low);
+            if (splitterNodesOnly && !(child instanceof SplitterNode)) {
+                break;
+            }
+            node = child;
+        }
+        return node;
+    }
+
+
+    /**
+     * Records that the splits of the specified node have changed.  The regions
+     * of the descendants of the node will be recomputed the next time that the
+     * geometry is queried.
+     * @param splitterNode The node whose splits have changed.
+     */
+    void invalidate(SplitterNode splitterNode) {
+        if (!pendingNodes.contains(splitterNode)) {
+            pendingNodes.add(splitterNode);
+        }
+    }
+
+
+    /**
+     * Determines whether there are changes to the tree which haven't yet been
+     * collected by {@link #takeChangedNodes()}.
+     */
+    boolean hasChanges() {
+        return !pendingNodes.isEmpty() || !changedNodes.isEmpty();
+    }
+
+
+    /**
+     * Gets the nodes whose regions have changed (or, in the case of splitter
+     * nodes, whose splits have changed) since this method was last called, and
+     * forgets about them.  Once pixel bounds have been computed, a node is only
+     * deemed to have changed if its pixel bounds have changed at one of the cached
+     * container sizes.  This is intended
+     * for use by the single layout which is responsible for the tree.
+     * @return The changed nodes.
+     */
+    public Set<Node> takeChangedNodes() {
+        update();
+        if (changedNodes.isEmpty()) {
+            return Collections.emptySet();
+        }
+        Set<Node> changed = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+        changed.addAll(changedNodes);
+        changedNodes.clear();
+        return changed;
+    }
+
+
+    private Region getRegion(Node node) {
+        update();
+        return regions.get(node);
+    }
+
+
+    private PixelRegion getPixelRegion(Node node, int width, int height) {
+        return getPixelBounds(width, height).regions.get(node);
+    }
+
+
+    private PixelBounds getPixelBounds(int width, int height) {
+        update();
+        for (int i = 0; i < pixelBounds.size(); i++) {
+            PixelBounds bounds = pixelBounds.get(i);
+            if (bounds.width == width && bounds.height == height) {
+                if (i != 0) {
+                    pixelBounds.remove(i);
+                    pixelBounds.add(0, bounds);
+                }
+                return bounds;
+            }
+        }
+        if (pixelBounds.size() == MAX_PIXEL_SIZES) {
+            // A layout at the size that is dropped can't be brought up
+            // to date from the changes to the other sizes
+            pixelBounds.remove(MAX_PIXEL_SIZES - 1);
+            changedNodes.addAll(regions.keySet());
+        }
+        // Everything needs to be computed for a new size
+        PixelBounds bounds = new PixelBounds(width, height);
+        PixelRegion rootRegion = new PixelRegion();
+        rootRegion.set(0, 0, width, height);
+        bounds.regions.put(rootNode, rootRegion);
+        if (rootNode instanceof SplitterNode) {
+            layoutPixels(bounds, (SplitterNode) rootNode, rootRegion, true);
+        }
+        pixelBounds.add(0, bounds);
+        return bounds;
+    }
+
+
+    private void update() {
+        if (pendingNodes.isEmpty()) {
+            return;
+        }
+        for (int i = 0; i < pendingNodes.size(); i++) {
+            SplitterNode splitterNode = pendingNodes.get(i);
+            Region region = regions.get(splitterNode);
+            if (region != null) {
+                // The splitters of the node move even if the node itself doesn't
+                changedNodes.add(splitterNode);
+                layoutChildren(splitterNode, region, false);
+                for (PixelBounds bounds : pixelBounds) {
+                    PixelRegion pixelRegion = bounds.regions.get(splitterNode);
+                    if (pixelRegion != null) {
+                        layoutPixels(bounds, splitterNode, pixelRegion, false);
+                    }
+                }
+            }
+        }
+        pendingNodes.clear();
+    }
+
+
+    /**
+     * Computes the regions of the visible children of a splitter node.
+     * @param splitterNode The splitter node.
+     * @param region The region of the splitter node.
+     * @param force <code>true</code> if the whole subtree should be computed,
+     * <code>false</code> if only the subtrees of children whose regions have
+     * changed should be recomputed.
+     */
+    private void layoutChildren(SplitterNode splitterNode, Region region, boolean force) {
+        // Horizontal splitter nodes divide up their height, vertical splitter
+        // nodes divide up their width
+        boolean horizontal = splitterNode.isSplitterDirection(SplitterNode.HORIZONTAL_SPLITTER);
+        List<Node> visibleChildren = splitterNode.getVisibleChildren();
+        double span = splitterNode.getChildSpan();
+        double offset = 0.0;
+        for (int i = 0; i < visibleChildren.size(); i++) {
+            Node child = visibleChildren.get(i);
+            double normalisedSplit = splitterNode.getSplit(child) / span;
+            Region childRegion = regions.get(child);
+            if (childRegion == null) {
+                childRegion = new Region();
+                regions.put(child, childRegion);
+            }
+            boolean changed;
+            if (horizontal) {
+                double childHeight = region.height * normalisedSplit;
+                changed = childRegion.set(region.x, region.y + offset, region.width, childHeight);
+                offset += childHeight;
+            }
+            else {
+                double childWidth = region.width * normalisedSplit;
+                changed = childRegion.set(region.x + offset, region.y, childWidth, region.height);
+                offset += childWidth;
+            }
+            // Once there are pixel bounds, the changes to them are what count
+            if (!force && changed && pixelBounds.isEmpty()) {
+                changedNodes.add(child);
+            }
+            childRegion.childrenStale = force || changed;
+        }
+        for (Node child : visibleChildren) {
+            Region childRegion = regions.get(child);
+            if (childRegion.childrenStale && child instanceof SplitterNode) {
+                childRegion.childrenStale = false;
+                layoutChildren((SplitterNode) child, childRegion, force);
+            }
+        }
+    }
+
+
+    /**
+     * Computes the pixel bounds of the visible children of a splitter node
+     * for one container size.
+     * @param bounds The pixel bounds for the container size.
+     * @param splitterNode The splitter node.
+     * @param region The pixel bounds of the splitter node.
+     * @param force <code>true</code> if the whole subtree should be computed,
+     * <code>false</code> if only the subtrees of children whose bounds have
+     * changed should be recomputed.
+     */
+    private void layoutPixels(PixelBounds bounds, SplitterNode splitterNode, PixelRegion region, boolean force) {
+        boolean horizontal = splitterNode.isSplitterDirection(SplitterNode.HORIZONTAL_SPLITTER);
+        List<Node> visibleChildren = splitterNode.getVisibleChildren();
+        allocatePixels(splitterNode, visibleChildren, horizontal ? region.height : region.width);
+        int offset = 0;
+        for (int i = 0; i < visibleChildren.size(); i++) {
+            Node child = visibleChildren.get(i);
+            PixelRegion childRegion = bounds.regions.get(child);
+            boolean changed = childRegion == null;
+            if (changed) {
+                childRegion = new PixelRegion();
+                bounds.regions.put(child, childRegion);
+            }
+            if (horizontal) {
+                changed |= childRegion.set(region.x, region.y + offset, region.width, allocatedPixels[i]);
+            }
+            else {
+                changed |= childRegion.set(region.x + offset, region.y, allocatedPixels[i], region.height);
+            }
+            offset += allocatedPixels[i];
+            if (!force && changed) {
+                changedNodes.add(child);
+            }
+            childRegion.childrenStale = force || changed;
+        }
+        // The scratch space gets reused by the children, so they are only
+        // dealt with once all of our children have been positioned
+        for (Node child : visibleChildren) {
+            PixelRegion childRegion = bounds.regions.get(child);
+            if (childRegion.childrenStale && child instanceof SplitterNode) {
+                childRegion.childrenStale = false;
+                layoutPixels(bounds, (SplitterNode) child, childRegion, force);
+            }
+        }
+    }
+
+
+    /**
+     * Divides up a pixel span amongst the visible children of a splitter node using
+     * largest remainder allocation.  Each child receives the whole number of pixels
+     * of its exact share, and the pixels that are left over go to the children with
+     * the largest fractional remainders (earlier children win ties).  The results are
+     * placed in the allocatedPixels scratch array.
+     */
+    private void allocatePixels(SplitterNode splitterNode, List<Node> visibleChildren, int span) {
+        int count = visibleChildren.size();
+        if (allocatedPixels.length < count) {
+            allocatedPixels = new int[count * 2];
+            remainders = new double[count * 2];
+        }
+        double childSpan = splitterNode.getChildSpan();
+        int allocated = 0;
+        for (int i = 0; i < count; i++) {
+            double exact = childSpan > 0 ? span * (splitterNode.getSplit(visibleChildren.get(i)) / childSpan) : 0;
+            int whole = (int) Math.floor(exact);
+            allocatedPixels[i] = whole;
+            remainders[i] = exact - whole;
+            allocated += whole;
+        }
+        int unallocated = span - allocated;
+        while (unallocated > 0 && count > 0) {
+            int largest = 0;
+            for (int i = 1; i < count; i++) {
+                if (remainders[i] > remainders[largest]) {
+                    largest = i;
+                }
+            }
+            allocatedPixels[largest]++;
+            remainders[largest] -= 1.0;
+            unallocated--;
+        }
+        // Rounding errors in the exact shares could, in theory, over allocate
+        while (unallocated < 0) {
+            int smallest = -1;
+            for (int i = 0; i < count; i++) {
+                if (allocatedPixels[i] > 0 && (smallest == -1 || remainders[i] < remainders[smallest])) {
+                    smallest = i;
+                }
+            }
+            if (smallest == -1) {
+                break;
+            }
+            allocatedPixels[smallest]--;
+            remainders[smallest] += 1.0;
+            unallocated++;
+        }
+    }
+
+
+    private static class Region {
+
+        private double x;
+
+        private double y;
+
+        private double width;
+
+        private double height;
+
+        /**
+         * Whether the regions of the children of the node need to be recomputed
+         */
+        private boolean childrenStale;
+
+        private boolean contains(double px, double py) {
+            return px >= x && px < x + width && py >= y && py < y + height;
+        }
+
+        /**
+         * Sets this region.
+         * @return <code>true</code> if the region changed, otherwise <code>false</code>
+         */
+        private boolean set(double x, double y, double width, double height) {
+            if (this.x == x && this.y == y && this.width == width && this.height == height) {
+                return false;
+            }
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            return true;
+        }
+    }
+
+
+    /**
+     * The pixel bounds of the nodes for one container size
+     */
+    private static class PixelBounds {
+
+        private final int width;
+
+        private final int height;
+
+        private final Map<Node, PixelRegion> regions;
+
+        private PixelBounds(int width, int height) {
+            this.width = width;
+            this.height = height;
+            regions = new IdentityHashMap<Node, PixelRegion>();
+        }
+    }
+
+
+    private static class PixelRegion {
+
+        private int x;
+
+        private int y;
+
+        private int width;
+
+        private int height;
+
+        /**
+         * Whether the bounds of the children of the node need to be recomputed
+         */
+        private boolean childrenStale;
+
+        private boolean contains(int px, int py) {
+            return px >= x && px < x + width && py >= y && py < y + height;
+        }
+
+        /**
+         * Sets these bounds.
+         * @return <code>true</code> if the bounds changed, otherwise <code>false</code>
+         */
+        private boolean set(int x, int y, int width, int height) {
+            if (this.x == x && this.y == y && this.width == width && this.height == height) {
+                return false;
+            }
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            return true;
+        }
+    }
+}
@@ -28,6 +28,9 @@ import org.w3c.dom.Document;
 import java.io.Writer;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.lang.ref.WeakReference;
+import java.util.*;
+import java.util.List;
 
 
 /**
@@ -46,8 +49,57 @@ public abstract class Node {
     private SplitterNode parent;
     private boolean visible = true;
 
+    /**
+     * The index of this node in the children of its parent.  This
+     * is maintained by the parent.
+     */
+    private int indexInParent = -1;
+
+    /**
+     * The cached geometry of the tree rooted at this node.  This is
+     * only ever held by root nodes.
+     */
+    private LayoutGeometry layoutGeometry;
+
+    /**
+     * The number of edits in progress on the tree rooted at this node,
+     * and the nodes whose state changed during those edits.  These are
+     * only ever held by root nodes.
+     */
+    private int editDepth;
+
+    private Set<Node> editedNodes;
+
+    private List<NodeTreeEvent> pendingEvents;
+
+    private NodeTreeListener[] nodeTreeListeners = new NodeTreeListener[0];
+
+    /**
+     * The root of the tree that this node was removed from while an edit
+     * of that tree was in progress, or <code>null</code>.
+     */
+    private WeakReference<Node> detachedFrom;
+
     protected void setParent(SplitterNode node) {
+        if(node == null && parent != null) {
+            Node editRoot = getEditRoot();
+            detachedFrom = editRoot.editDepth > 0 ? new WeakReference<Node>(editRoot) : null;
+        }
+        else if(node != null) {
+            detachedFrom = null;
+        }
         this.parent = node;
+        // We might have been a root, in which case our geometry
+        // is no longer relevant
+        layoutGeometry = null;
+    }
+
+    int getIndexInParent() {
+        return indexInParent;
+    }
+
+    void setIndexInParent(int indexInParent) {
+        this.indexInParent = indexInParent;
     }
 
     /**
@@ -59,91 +111,119 @@ public abstract class Node {
         return parent;
     }
 
-    protected double getGloballyNormalisedHeight(Node child) {
-        if(parent != null) {
-            // Ask out parent
-            return parent.getGloballyNormalisedHeight(this);
-        }
-        else {
-            // We are a root, so, by definition our normalised
-            // height is 1.0
-            return 1.0;
+    /**
+     * Gets the root of the tree that this node belongs to.
+     * @return The root node, which is this node if this node
+     * does not have a parent.
+     */
+    public Node getRoot() {
+        Node root = this;
+        while(root.parent != null) {
+            root = root.parent;
         }
+        return root;
     }
 
-    protected double getGloballyNormalisedWidth(Node child) {
-        if(parent != null) {
-            // Ask our parent
-            return parent.getGloballyNormalisedWidth(this);
+    /**
+     * Gets the root whose edit the changes to this node are part of.  This is
+     * the root of the tree that this node belongs to, unless this node (or one of
+     * its ancestors) was removed from a tree whose edit is still in progress.
+     */
+    private Node getEditRoot() {
+        Node root = getRoot();
+        if(root.editDepth == 0 && root.detachedFrom != null) {
+            Node treeRoot = root.detachedFrom.get();
+            if(treeRoot != null) {
+                treeRoot = treeRoot.getEditRoot();
+                if(treeRoot.editDepth > 0) {
+                    return treeRoot;
+                }
+            }
         }
-        else {
-            return 1.0;
+        return root;
+    }
+
+    /**
+     * Gets the geometry of the tree that this node belongs to.  The geometry
+     * is computed in one pass and cached by the root node until the tree changes.
+     * @return The layout geometry of the tree that contains this node.
+     */
+    public LayoutGeometry getLayoutGeometry() {
+        Node root = getRoot();
+        if(root.layoutGeometry == null) {
+            root.layoutGeometry = new LayoutGeometry(root);
         }
+        return root.layoutGeometry;
+    }
+
+    /**
+     * Gets the geometry of the tree that this node belongs to, without
+     * computing it if it hasn't already been computed.
+     * @return The geometry, or <code>null</code>
+     */
+    LayoutGeometry getCachedLayoutGeometry() {
+        return getRoot().layoutGeometry;
+    }
+
+    /**
+     * Discards the cached geometry of the tree that this node belongs to.
+     */
+    protected void invalidateLayoutGeometry() {
+        getRoot().layoutGeometry = null;
+    }
+
+    protected double getGloballyNormalisedHeight(Node child) {
+        return getLayoutGeometry().getHeight(child);
+    }
+
+    protected double getGloballyNormalisedWidth(Node child) {
+        return getLayoutGeometry().getWidth(child);
     }
 
     public double getGloballyNormalisedXLocation() {
-        if(parent == null) {
-            return 0.0;
-        }
-        else {
-            return parent.getGloballyNormalisedXLocation(this);
-        }
+        return getLayoutGeometry().getX(this);
     }
 
     public double getGloballyNormalisedXLocation(Node child) {
-        if(parent == null) {
-            return 0.0;
-        }
-        else {
-            return parent.getGloballyNormalisedXLocation(this);
-        }
+        return getLayoutGeometry().getX(child);
     }
 
     public double getGloballyNormalisedYLocation() {
-        if(parent == null) {
-            return 0.0;
-        }
-        else {
-            return parent.getGloballyNormalisedYLocation(this);
-        }
+        return getLayoutGeometry().getY(this);
     }
 
     public double getGloballyNormalisedYLocation(Node child) {
-        if(parent == null) {
-            return 0.0;
-        }
-        else {
-            return parent.getGloballyNormalisedYLocation(this);
-        }
+        return getLayoutGeometry().getY(child);
     }
 
 
     public double getGloballyNormalisedHeight() {
-        if(parent == null) {
-            // Root node, so our global height is 1.0
-            return 1.0;
-        }
-        else {
-            // We need to ask our parent
-            return parent.getGloballyNormalisedHeight(this);
-        }
+        return getLayoutGeometry().getHeight(this);
     }
 
     public double getGloballyNormalisedWidth() {
-        if(parent == null) {
-            // Root node, so our global width is 1.0
-            return 1.0;
-        }
-        else {
-            // We need to ask out parent
-            return parent.getGloballyNormalisedWidth(this);
-        }
+        return getLayoutGeometry().getWidth(this);
+    }
 
+    /**
+     * Gets the deepest visible node in the subtree rooted at this node
+     * which contains the specified point.  This can be used for routing
+     * pointer events to nodes.
+     * @param x The globally normalised x coordinate of the point
+     * (0.0 is the left edge of the root node and 1.0 is the right edge).
+     * @param y The globally normalised y coordinate of the point
+     * (0.0 is the top edge of the root node and 1.0 is the bottom edge).
+     * @return The deepest node that contains the point, or <code>null</code>
+     * if the point lies outside of this node.
+     */
+    public Node getDeepestNodeAt(double x, double y) {
+        return getLayoutGeometry().getDeepestNode(this, x, y);
     }
 
     final public void setVisible(boolean visible) {
         this.visible = visible;
         notifyStateChange();
+        postNodeTreeEvent(NodeTreeEvent.visibilityChanged(this));
     }
 
     public boolean isVisible() {
@@ -151,11 +231,123 @@ public abstract class Node {
     }
 
     protected void notifyStateChange() {
-        stateChanged();
-        if(parent != null) {
-            parent.stateChanged();
-            // Apply recursively
-            parent.notifyStateChange();
+        Node root = getEditRoot();
+        if(root.editDepth > 0) {
+            // Deferred until the edit completes
+            if(root.editedNodes == null) {
+                root.editedNodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+            }
+            root.editedNodes.add(this);
+            return;
+        }
+        // Apply to us and each of our ancestors
+        for(Node node = this; node != null; node = node.parent) {
+            node.stateChanged();
+        }
+        // The geometry of the tree is now stale
+        root.layoutGeometry = null;
+    }
+
+    /**
+     * Performs an edit of the tree that this node belongs to as a single transaction.
+     * The state change notifications that the changes made by the edit would normally
+     * cause are deferred until the edit completes.  At that point each node that was
+     * affected by the edit (the changed nodes and their ancestors) is notified exactly
+     * once.  Edits may be nested, in which case the notifications are deferred until
+     * the outermost edit completes.  Note that, until the edit completes, the visibility
+     * and geometry of the ancestors of changed nodes is not updated.  Changes to nodes
+     * that are removed from the tree during the edit are still part of the edit, as is
+     * an edit of such a node.
+     * @param edit The edit to be performed.
+     */
+    public void edit(NodeEdit edit) {
+        Node editRoot = getEditRoot();
+        editRoot.editDepth++;
+        try {
+            edit.edit(getRoot());
+        }
+        finally {
+            editRoot.editDepth--;
+            if(editRoot.editDepth == 0) {
+                editRoot.commitEdit();
+            }
+        }
+    }
+
+    private void commitEdit() {
+        Set<Node> changedNodes = editedNodes;
+        editedNodes = null;
+        if(changedNodes != null) {
+            // Each affected node is notified once, however many of its
+            // descendants were changed
+            Set<Node> affectedNodes = Collections.newSetFromMap(new IdentityHashMap<Node, Boolean>());
+            for(Node changedNode : changedNodes) {
+                for(Node node = changedNode; node != null && affectedNodes.add(node); node = node.parent) {
+                    node.stateChanged();
+                }
+                // The node may have been removed from this tree during the edit
+                changedNode.getRoot().layoutGeometry = null;
+            }
+            layoutGeometry = null;
+        }
+        List<NodeTreeEvent> events = pendingEvents;
+        pendingEvents = null;
+        if(events != null) {
+            for(NodeTreeEvent event : events) {
+                event.deliver();
+            }
+        }
+    }
+
+    /**
+     * Adds a listener which will be notified of changes to this node and
+     * any of its descendants.
+     * @param listener The listener to be added.
+     */
+    public void addNodeTreeListener(NodeTreeListener listener) {
+        NodeTreeListener[] listeners = Arrays.copyOf(nodeTreeListeners, nodeTreeListeners.length + 1);
+        listeners[nodeTreeListeners.length] = listener;
+        nodeTreeListeners = listeners;
+    }
+
+    /**
+     * Removes a previously added listener.
+     * @param listener The listener to be removed.
+     */
+    public void removeNodeTreeListener(NodeTreeListener listener) {
+        List<NodeTreeListener> listeners = new ArrayList<NodeTreeListener>(Arrays.asList(nodeTreeListeners));
+        listeners.remove(listener);
+        nodeTreeListeners = listeners.toArray(new NodeTreeListener[listeners.size()]);
+    }
+
+    /**
+     * Gets the listeners that have been added to this node.  The array is
+     * replaced rather than modified when listeners are added or removed, so
+     * it is safe to iterate over while listeners are being notified.
+     */
+    NodeTreeListener[] getNodeTreeListeners() {
+        return nodeTreeListeners;
+    }
+
+    /**
+     * Delivers an event to the listeners of the tree that this node belongs
+     * to, or queues it until the current edit completes.  A queued event is
+     * delivered to the listeners of the nodes that were its source and the
+     * source's ancestors when it was posted.
+     * @param event The event.
+     */
+    void postNodeTreeEvent(NodeTreeEvent event) {
+        Node root = getEditRoot();
+        if(root.editDepth > 0) {
+            // The source may be removed from the tree before the edit completes
+            event.captureRoute();
+            if(root.pendingEvents == null) {
+                root.pendingEvents = new ArrayList<NodeTreeEvent>();
+            }
+            root.pendingEvents.add(event);
+        }
+        else {
+            event.deliver();
         }
     }
 
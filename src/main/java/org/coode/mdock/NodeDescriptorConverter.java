@@ -0,0 +1,108 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import javax.swing.*;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * Converts node descriptors between the XML format and the binary format.
+ * The components aren't created - component nodes are given placeholders
+ * which keep the properties that were read, and the properties are written
+ * out again unchanged.  A placeholder that does get shown is replaced by an
+ * empty component which keeps the same properties.
+ */
+public class NodeDescriptorConverter {
+
+    /**
+     * The placeholders aren't normally shown, but if one is, it's replaced by an
+     * inert component which still holds the properties that were read
+     */
+    private static final ComponentFactory PLACEHOLDER_FACTORY = new ComponentFactory() {
+        public JComponent createComponent(Map<String, String> properties) {
+            return new ConvertedComponent(properties);
+        }
+    };
+
+    private static final ComponentPropertiesFactory PLACEHOLDER_PROPERTIES_FACTORY = new ComponentPropertiesFactory() {
+        public Map<String, String> getProperties(JComponent component) {
+            if (component instanceof ConvertedComponent) {
+                return ((ConvertedComponent) component).getProperties();
+            }
+            return Collections.emptyMap();
+        }
+    };
+
+    private NodeDescriptorConverter() {
+    }
+
+
+    /**
+     * Converts an XML node descriptor into a binary node descriptor.
+     * @param reader The reader which the XML descriptor is read from.
+     * @param outputStream The stream which the binary descriptor is written to.
+     */
+    public static void convertToBinary(Reader reader, OutputStream outputStream) throws IOException,
+                                                                                      NodeReanimationException {
+        SplitterNode rootNode = new NodeReanimator(PLACEHOLDER_FACTORY, true).read(reader);
+        new BinaryNodeSerialiser(rootNode, PLACEHOLDER_PROPERTIES_FACTORY, outputStream).serialise();
+    }
+
+
+    /**
+     * Converts a binary node descriptor into an XML node descriptor.
+     * @param inputStream The stream which the binary descriptor is read from.
+     * @param writer The writer which the XML descriptor is written to.
+     */
+    public static void convertToXML(InputStream inputStream, Writer writer) throws IOException,
+                                                                                 NodeReanimationException {
+        SplitterNode rootNode = new BinaryNodeReanimator(PLACEHOLDER_FACTORY, true).read(inputStream);
+        new NodeSerialiser(rootNode, PLACEHOLDER_PROPERTIES_FACTORY, writer).write();
+    }
+
+
+    /**
+     * An empty component which stands in for a component of a converted
+     * node descriptor
+     */
+    private static class ConvertedComponent extends JPanel {
+
+        private Map<String, String> properties;
+
+        public ConvertedComponent(Map<String, String> properties) {
+            this.properties = new HashMap<String, String>(properties);
+        }
+
+        public Map<String, String> getProperties() {
+            return Collections.unmodifiableMap(properties);
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+
+/**
+ * An edit of a node tree, which is performed as a single transaction via
+ * {@link Node#edit(NodeEdit)} or {@link NodePanel#edit(NodeEdit)}.  Any number of
+ * changes can be made to the tree during the edit, and the tree is only notified of
+ * the changes once, when the edit completes.
+ */
+public interface NodeEdit {
+
+    /**
+     * Performs the edit.
+     * @param rootNode The root node of the tree being edited.
+     */
+    void edit(Node rootNode);
+}
@@ -45,6 +45,17 @@ public class NodeLayout implements LayoutManager2 {
 
     private int preferredHeight = 600;
 
+    /**
+     * The geometry that the container was last laid out with.
+     */
+    private LayoutGeometry laidOutGeometry;
+
+    private Container laidOutContainer;
+
+    private int laidOutWidth;
+
+    private int laidOutHeight;
+
     public NodeLayout(Node rootNode) {
         this.rootNode = rootNode;
     }
@@ -81,17 +92,54 @@ public class NodeLayout implements LayoutManager2 {
         return new Dimension(10, 10);
     }
 
-    public void layoutContainer(Container parent) {
-        layoutNode(rootNode, parent);
+    /**
+     * Forces the next layout to re-bound every node, rather than just the
+     * nodes whose geometry has changed since the last layout.  This should be
+     * called when components are added to the container without the structure
+     * of the node tree changing.
+     */
+    public void invalidateAll() {
+        laidOutGeometry = null;
+    }
+
+    /**
+     * Determines whether the last layout of a container is up to date with
+     * the geometry of the tree.
+     */
+    boolean isLaidOut(Container parent) {
+        LayoutGeometry geometry = rootNode.getCachedLayoutGeometry();
+        return geometry != null && geometry == laidOutGeometry && parent == laidOutContainer
+                && parent.getWidth() == laidOutWidth && parent.getHeight() == laidOutHeight
+                && !geometry.hasChanges();
+    }
 
+    public void layoutContainer(Container parent) {
+        LayoutGeometry geometry = rootNode.getLayoutGeometry();
+        if(geometry == laidOutGeometry && parent == laidOutContainer
+                && parent.getWidth() == laidOutWidth && parent.getHeight() == laidOutHeight) {
+            // Only the subtrees of nodes whose splits have changed need to be
+            // re-bounded.  If nothing has changed (e.g. a component inside one
+            // of the nodes has been invalidated) then there is nothing to do.
+            for(Node changedNode : geometry.takeChangedNodes()) {
+                layoutChangedNode(geometry, changedNode, parent);
+            }
+        }
+        else {
+            geometry.takeChangedNodes();
+            layoutNode(geometry, rootNode, parent);
+            laidOutGeometry = geometry;
+            laidOutContainer = parent;
+            laidOutWidth = parent.getWidth();
+            laidOutHeight = parent.getHeight();
+        }
     }
 
 
-    private void layoutNode(Node node, Container parent) {
+    private void layoutNode(LayoutGeometry geometry, Node node, Container parent) {
         if(node instanceof ComponentNode) {
             ComponentNode componentNode = (ComponentNode) node;
             JComponent comp = componentNode.getComponent();
-            comp.setBounds(Util.getBounds(node, parent, true));
+            comp.setBounds(Util.getBounds(geometry, node, parent, true));
         }
         else {
             SplitterNode splitterNode = (SplitterNode) node;
@@ -99,10 +147,30 @@ public class NodeLayout implements LayoutManager2 {
                 splitter.resetBounds();
             }
             for(Node curChild : splitterNode.getVisibleChildren()) {
-                layoutNode(curChild, parent);
+                layoutNode(geometry, curChild, parent);
             }
         }
     }
 
 
+    /**
+     * Re-bounds a node whose region has changed.  The descendants of the node whose
+     * regions have changed are themselves marked as changed, so this does not recurse.
+     * Setting the bounds of a component only repaints the old and new bounds of the
+     * component, and only if the bounds actually differ.
+     */
+    private void layoutChangedNode(LayoutGeometry geometry, Node node, Container parent) {
+        if(!geometry.contains(node)) {
+            return;
+        }
+        if(node instanceof ComponentNode) {
+            JComponent comp = ((ComponentNode) node).getComponent();
+            comp.setBounds(Util.getBounds(geometry, node, parent, true));
+        }
+        else if(node instanceof SplitterNode) {
+            for(Splitter splitter : ((SplitterNode) node).getSplitters()) {
+                splitter.resetBounds();
+            }
+        }
+    }
 }
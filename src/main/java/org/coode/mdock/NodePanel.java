@@ -24,6 +24,8 @@ package org.coode.mdock;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.*;
+import java.util.List;
 
 
 /**
@@ -42,39 +44,248 @@ import java.awt.*;
  */
 public class NodePanel extends JPanel {
 
+    /**
+     * The drag mode in which dragging a splitter only moves the splitter,
+     * and the nodes either side of it are resized when the drag ends.
+     */
+    public static final int DEFERRED_RESIZE_DRAG_MODE = 0;
+
+    /**
+     * The drag mode in which the nodes either side of a splitter are
+     * resized as the splitter is dragged.
+     */
+    public static final int LIVE_RESIZE_DRAG_MODE = 1;
+
+    /**
+     * The drag mode in which an outline of a splitter is painted over the panel
+     * as the splitter is dragged.  Neither the splitter nor the nodes either side
+     * of it are moved until the drag ends, so the components underneath are only
+     * repainted where the outline passes over them.
+     */
+    public static final int OVERLAY_DRAG_MODE = 2;
+
+    public static final String SPLITTER_DRAG_MODE_PROPERTY = "splitterDragMode";
+
     private Node rootNode;
 
+    private int splitterDragMode = DEFERRED_RESIZE_DRAG_MODE;
+
+    /**
+     * The outline of the splitter that is being dragged in overlay drag mode
+     */
+    private final Rectangle splitterOverlay = new Rectangle();
+
+    private boolean splitterOverlayShowing;
+
+    /**
+     * Whether the components need to be rebuilt, or the layout brought up to
+     * date with changed splits, and whether that work has been scheduled
+     */
+    private boolean rebuildPending;
+
+    private boolean relayoutPending;
+
+    private boolean updateScheduled;
+
+    /**
+     * Listens to the node tree, but only while this panel is displayable, so that
+     * a discarded panel isn't kept alive (or updated) by a tree which outlives it
+     */
+    private final NodeTreeListener nodeTreeListener = new NodeTreeAdapter() {
+        public void childInserted(SplitterNode parent, Node child, int index) {
+            rebuildLater();
+        }
+
+        public void childRemoved(SplitterNode parent, Node child, int index) {
+            rebuildLater();
+        }
+
+        public void visibilityChanged(Node node) {
+            rebuildLater();
+        }
+
+        public void splitChanged(SplitterNode parent, Node child) {
+            // Only the geometry has changed, which the layout deals with.  Splitters
+            // validate as they are dragged, in which case there is nothing to do.
+            relayoutPending = true;
+            scheduleUpdate();
+        }
+    };
+
     public NodePanel(Node rootNode) {
         this.rootNode = rootNode;
         setLayout(new NodeLayout(rootNode));
         rebuild();
     }
-    
+
+    public void addNotify() {
+        super.addNotify();
+        rootNode.addNodeTreeListener(nodeTreeListener);
+        // The tree may have changed while we weren't listening
+        rebuildLater();
+    }
+
+    public void removeNotify() {
+        rootNode.removeNodeTreeListener(nodeTreeListener);
+        rebuildPending = false;
+        relayoutPending = false;
+        super.removeNotify();
+    }
+
     public Node getRootNode() {
         return rootNode;
     }
 
+    /**
+     * Gets the way in which the splitters in this panel behave
+     * when they are dragged.
+     * @return One of {@link #DEFERRED_RESIZE_DRAG_MODE}, {@link #LIVE_RESIZE_DRAG_MODE}
+     * or {@link #OVERLAY_DRAG_MODE}
+     */
+    public int getSplitterDragMode() {
+        return splitterDragMode;
+    }
+
+    /**
+     * Sets the way in which the splitters in this panel behave when
+     * they are dragged.  The default is {@link #DEFERRED_RESIZE_DRAG_MODE}.
+     * @param splitterDragMode One of {@link #DEFERRED_RESIZE_DRAG_MODE},
+     * {@link #LIVE_RESIZE_DRAG_MODE} or {@link #OVERLAY_DRAG_MODE}
+     */
+    public void setSplitterDragMode(int splitterDragMode) {
+        if (splitterDragMode != DEFERRED_RESIZE_DRAG_MODE && splitterDragMode != LIVE_RESIZE_DRAG_MODE
+                && splitterDragMode != OVERLAY_DRAG_MODE) {
+            throw new IllegalArgumentException("Unknown splitter drag mode: " + splitterDragMode);
+        }
+        int oldSplitterDragMode = this.splitterDragMode;
+        this.splitterDragMode = splitterDragMode;
+        firePropertyChange(SPLITTER_DRAG_MODE_PROPERTY, oldSplitterDragMode, splitterDragMode);
+    }
+
+    /**
+     * Sets the outline of a splitter that is being dragged, which is painted
+     * over the children of this panel.  Only the old and new outlines are repainted.
+     */
+    void setSplitterOverlay(int x, int y, int width, int height) {
+        if (splitterOverlayShowing) {
+            repaint(splitterOverlay.x, splitterOverlay.y, splitterOverlay.width, splitterOverlay.height);
+        }
+        splitterOverlay.setBounds(x, y, width, height);
+        splitterOverlayShowing = true;
+        repaint(x, y, width, height);
+    }
+
+    void clearSplitterOverlay() {
+        if (splitterOverlayShowing) {
+            splitterOverlayShowing = false;
+            repaint(splitterOverlay.x, splitterOverlay.y, splitterOverlay.width, splitterOverlay.height);
+        }
+    }
+
+    protected void paintChildren(Graphics g) {
+        super.paintChildren(g);
+        if (splitterOverlayShowing) {
+            g.setColor(Color.GRAY);
+            g.fillRect(splitterOverlay.x, splitterOverlay.y, splitterOverlay.width, splitterOverlay.height);
+        }
+    }
+
+    /**
+     * Performs an edit of the node tree as a single transaction (see
+     * {@link Node#edit(NodeEdit)}) and then rebuilds and revalidates this
+     * panel once.
+     * @param edit The edit to be performed.
+     */
+    public void edit(NodeEdit edit) {
+        rootNode.edit(edit);
+        rebuild();
+    }
+
+    /**
+     * Brings the components in this panel into line with the node tree.  The current
+     * components are reconciled against the components that the tree requires:
+     * only components which are new to the panel are added, only components which are
+     * no longer required are removed, and the remaining components are reordered in
+     * place.  Components which survive a rebuild are therefore not removed from (and
+     * re-added to) the component hierarchy, and keep their focus state.
+     */
     public void rebuild() {
-        Component focusedComponent = FocusManager.getCurrentManager().getFocusOwner();
+        rebuildPending = false;
+        relayoutPending = false;
+        List<Component> required = new ArrayList<Component>();
+        addNode(rootNode, required);
+        Set<Component> requiredSet = Collections.newSetFromMap(new IdentityHashMap<Component, Boolean>());
+        requiredSet.addAll(required);
 
-        removeAll();
-        addNode(rootNode);
+        boolean added = false;
+        for (int i = getComponentCount() - 1; i >= 0; i--) {
+            if (!requiredSet.contains(getComponent(i))) {
+                remove(i);
+            }
+        }
+        for (int i = 0; i < required.size(); i++) {
+            Component component = required.get(i);
+            if (component.getParent() != this) {
+                add(component, i);
+                added = true;
+            }
+            else if (getComponent(i) != component) {
+                // Doesn't cause the component to be removed and re-added
+                setComponentZOrder(component, i);
+            }
+        }
+        if (added) {
+            // New components need to be given bounds
+            ((NodeLayout) getLayout()).invalidateAll();
+        }
         revalidate();
-        if (focusedComponent != null) {
-            focusedComponent.requestFocus();
+    }
+
+
+    /**
+     * Schedules a rebuild.  Any number of changes to the tree that occur
+     * before the rebuild takes place are dealt with by a single rebuild.
+     */
+    private void rebuildLater() {
+        rebuildPending = true;
+        scheduleUpdate();
+    }
+
+
+    /**
+     * Schedules the pending rebuild or relayout.  A rebuild also brings the
+     * layout up to date, and a relayout only takes place if the layout is
+     * out of date with the tree.
+     */
+    private void scheduleUpdate() {
+        if (updateScheduled) {
+            return;
         }
+        updateScheduled = true;
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                updateScheduled = false;
+                if (rebuildPending) {
+                    rebuild();
+                }
+                else if (relayoutPending) {
+                    relayoutPending = false;
+                    if (!((NodeLayout) getLayout()).isLaidOut(NodePanel.this)) {
+                        revalidate();
+                    }
+                }
+            }
+        });
     }
 
 
-    private void addNode(Node node) {
+    private void addNode(Node node, List<Component> components) {
         if (node instanceof ComponentNode) {
-            add(((ComponentNode) node).getComponent());
+            components.add(((ComponentNode) node).getComponent());
         } else {
-            for (Splitter splitter : ((SplitterNode) node).getSplitters()) {
-                add(splitter);
-            }
+            components.addAll(((SplitterNode) node).getSplitters());
             for (Node curChildNode : ((SplitterNode) node).getVisibleChildren()) {
-                addNode(curChildNode);
+                addNode(curChildNode, components);
             }
         }
     }
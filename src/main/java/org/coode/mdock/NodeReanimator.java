@@ -22,20 +22,19 @@ package org.coode.mdock;
  * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
  */
 
-import org.xml.sax.SAXException;
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
-import javax.xml.parsers.ParserConfigurationException;
-import javax.swing.*;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.*;
-import java.util.List;
-import java.awt.*;
 
 
 /**
@@ -50,227 +49,316 @@ import java.awt.*;
  * Developed as part of the CO-ODE project (http://www.co-ode.org)
  *
  * Creates a tree of <code>Node</code>s from a given node descriptor (node XML file).
+ * The nodes are built as their elements are closed, so the descriptor is read
+ * in a single pass.
  */
 public class NodeReanimator extends DefaultHandler {
 
+    private static final double[] NO_SPLITS = new double[0];
+
+    /**
+     * Parsers are expensive to create, so each thread keeps one.  The parser
+     * is taken out while it's in use, in case a component factory reanimates
+     * another descriptor while this one is being read.
+     */
+    private static final ThreadLocal<SAXParser> cachedParser = new ThreadLocal<>();
+
     private ComponentFactory componentFactory;
 
-    private Stack<NodeElement> elementStack;
+    private boolean lazy;
 
-    private ComponentElement currentComponentElement;
+    private Stack<SplitterElement> splitterStack;
+
+    private ComponentNode currentComponentNode;
+
+    private String currentLabel;
+
+    /**
+     * The properties of the component being read, or <code>null</code>
+     * if a component isn't being read
+     */
+    private Map<String, String> currentProperties;
 
     private SplitterNode rootNode;
 
+    private Locator locator;
+
 
     /**
      * Creates a <code>NodeReanimator</code> which will read an XML node
-     * descriptor from a given reader.
+     * descriptor from a given reader.  If the descriptor can't be read, the
+     * reanimator is still created, and {@link #getRootNode()} returns
+     * <code>null</code>.
      * @param is The reader which a node descriptor will be read from
      * @param componentFactory The component factory which should be used
      * to create the components that are contained in component nodes.  This
      * factory is application specific.
+     * @deprecated Use {@link #NodeReanimator(ComponentFactory, boolean)} and
+     * {@link #read(Reader)}, which report why a descriptor couldn't be read.
      */
+    @Deprecated
     public NodeReanimator(Reader is, ComponentFactory componentFactory) {
+        this(is, componentFactory, false);
+    }
+
+
+    /**
+     * Creates a <code>NodeReanimator</code> which will read an XML node
+     * descriptor from a given reader.  If the descriptor can't be read, the
+     * reanimator is still created, and {@link #getRootNode()} returns
+     * <code>null</code>.
+     * @param is The reader which a node descriptor will be read from
+     * @param componentFactory The component factory which should be used
+     * to create the components that are contained in component nodes.  This
+     * factory is application specific.
+     * @param lazy If <code>true</code>, component nodes are given placeholders
+     * (see {@link PlaceholderComponent}) rather than components, and the factory only
+     * creates each component when it is first shown.
+     * @deprecated Use {@link #NodeReanimator(ComponentFactory, boolean)} and
+     * {@link #read(Reader)}, which report why a descriptor couldn't be read.
+     */
+    @Deprecated
+    public NodeReanimator(Reader is, ComponentFactory componentFactory, boolean lazy) {
+        this(componentFactory, lazy);
+        try {
+            read(is);
+        } catch (NodeReanimationException e) {
+            // The root node is left as null
+        } catch (IOException e) {
+            // The root node is left as null
+        }
+    }
+
+
+    /**
+     * Creates a <code>NodeReanimator</code> which reads node descriptors
+     * with {@link #read(Reader)}.
+     * @param componentFactory The component factory which should be used
+     * to create the components that are contained in component nodes.
+     * @param lazy If <code>true</code>, component nodes are given placeholders
+     * rather than components.
+     */
+    public NodeReanimator(ComponentFactory componentFactory, boolean lazy) {
         this.componentFactory = componentFactory;
-        elementStack = new Stack<NodeElement>();
+        this.lazy = lazy;
+        splitterStack = new Stack<SplitterElement>();
+    }
+
+
+    /**
+     * Reads a node descriptor.
+     * @param is The reader which the node descriptor will be read from.
+     * @return The root node of the tree described by the descriptor.
+     * @throws IOException if the descriptor couldn't be read.
+     * @throws NodeReanimationException if the descriptor isn't well formed, or
+     * doesn't describe a node tree.
+     */
+    public SplitterNode read(Reader is) throws IOException, NodeReanimationException {
+        splitterStack.clear();
+        currentComponentNode = null;
+        currentProperties = null;
+        rootNode = null;
+        SAXParser saxParser = takeParser();
         try {
-            SAXParser saxParser = SAXParserFactory.newInstance().newSAXParser();
             saxParser.parse(new InputSource(is), this);
+        } catch (SAXParseException e) {
+            rootNode = null;
+            throw new NodeReanimationException("Line " + e.getLineNumber() + ": " + e.getMessage(), e);
+        } catch (SAXException e) {
+            rootNode = null;
+            throw new NodeReanimationException(e.getMessage(), e);
+        } catch (IOException e) {
+            rootNode = null;
+            throw e;
+        } finally {
+            locator = null;
+            saxParser.reset();
+            cachedParser.set(saxParser);
+        }
+        if (rootNode == null) {
+            throw new NodeReanimationException("The node descriptor doesn't contain a splitter node");
+        }
+        return rootNode;
+    }
+
 
+    private static SAXParser takeParser() throws NodeReanimationException {
+        SAXParser saxParser = cachedParser.get();
+        if (saxParser != null) {
+            cachedParser.remove();
+            return saxParser;
+        }
+        try {
+            return SAXParserFactory.newInstance().newSAXParser();
         } catch (ParserConfigurationException e) {
-            e.printStackTrace();
+            throw new NodeReanimationException("Could not create an XML parser", e);
         } catch (SAXException e) {
-            e.printStackTrace();
-        } catch (IOException e) {
-            e.printStackTrace();
+            throw new NodeReanimationException("Could not create an XML parser", e);
         }
     }
 
+    /**
+     * Gets the root node of the last descriptor that was read.
+     * @return The root node, or <code>null</code> if a descriptor hasn't been
+     * read, or the last descriptor couldn't be read.
+     */
     public SplitterNode getRootNode() {
         return rootNode;
     }
 
+    public void setDocumentLocator(Locator locator) {
+        this.locator = locator;
+    }
+
     public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
         if(qName.equals(Vocabulary.COMPONENT_NODE)) {
-            NodeElement element = new ComponentNodeElement();
-            elementStack.push(element);
+            if(splitterStack.isEmpty() || currentComponentNode != null) {
+                throw createException("A component node must be inside a splitter node");
+            }
+            currentComponentNode = new ComponentNode();
         }
         else if(qName.equals(Vocabulary.HORIZONTAL_SPLITTER_NODE)) {
-            NodeElement element = new HorizontalSplitterElement(getSplits(attributes));
-            elementStack.push(element);
+            startSplitterElement(SplitterNode.HORIZONTAL_SPLITTER, attributes);
         }
         else if(qName.equals(Vocabulary.VERTICAL_SPLITTER_NODE)) {
-            NodeElement element = new VerticalSplitterElement(getSplits(attributes));
-            elementStack.push(element);
+            startSplitterElement(SplitterNode.VERTICAL_SPLITTER, attributes);
         }
         else if(qName.equals(Vocabulary.COMPONENT)) {
-            currentComponentElement = new ComponentElement(attributes.getValue(Vocabulary.LABEL));
+            if(currentComponentNode == null || currentProperties != null) {
+                throw createException("A component must be inside a component node");
+            }
+            currentLabel = attributes.getValue(Vocabulary.LABEL);
+            currentProperties = new HashMap<String, String>();
         }
         else if(qName.equals(Vocabulary.PROPERTY)) {
-            currentComponentElement.putProperty(attributes.getValue(Vocabulary.ID), attributes.getValue(Vocabulary.VALUE));
+            if(currentProperties == null) {
+                throw createException("A property must be inside a component");
+            }
+            currentProperties.put(attributes.getValue(Vocabulary.ID), attributes.getValue(Vocabulary.VALUE));
         }
     }
 
+    private void startSplitterElement(int direction, Attributes attributes) throws SAXException {
+        if(currentComponentNode != null) {
+            throw createException("A splitter node can't be inside a component node");
+        }
+        if(rootNode != null) {
+            throw createException("There can only be one root splitter node");
+        }
+        splitterStack.push(new SplitterElement(direction, parseSplits(attributes.getValue(Vocabulary.SPLITS))));
+    }
+
     public void endElement(String uri, String localName, String qName) throws SAXException {
         if(qName.equals(Vocabulary.COMPONENT_NODE)) {
-            NodeElement element = elementStack.pop();
-            elementStack.peek().addChildNodeElement(element);
+            splitterStack.peek().addChild(currentComponentNode);
+            currentComponentNode = null;
         }
-        else if(qName.equals(Vocabulary.HORIZONTAL_SPLITTER_NODE)) {
-            NodeElement element = elementStack.pop();
-            if(elementStack.isEmpty()) {
+        else if(qName.equals(Vocabulary.HORIZONTAL_SPLITTER_NODE) || qName.equals(Vocabulary.VERTICAL_SPLITTER_NODE)) {
+            SplitterElement element = splitterStack.pop();
+            if(element.getChildCount() != element.getSplits().length) {
+                throw createException("The number of splits (" + element.getSplits().length + ") is not the same as " +
+                                      "the number of child nodes (" + element.getChildCount() + ")");
+            }
+            SplitterNode node = element.createNode();
+            if(splitterStack.isEmpty()) {
                 // Root
-                rootNode = (SplitterNode) element.createNode();
+                rootNode = node;
             }
             else {
-                elementStack.peek().addChildNodeElement(element);
+                splitterStack.peek().addChild(node);
             }
         }
-        else if(qName.equals(Vocabulary.VERTICAL_SPLITTER_NODE)) {
-            NodeElement element = elementStack.pop();
-            if(elementStack.isEmpty()) {
-                // Root
-                rootNode = (SplitterNode) element.createNode();
+        else if(qName.equals(Vocabulary.COMPONENT)) {
+            if(lazy) {
+                currentComponentNode.addPlaceholder(currentLabel, componentFactory, currentProperties);
             }
             else {
-                elementStack.peek().addChildNodeElement(element);
+                currentComponentNode.add(componentFactory.createComponent(currentProperties), currentLabel);
             }
-        }
-        else if(qName.equals(Vocabulary.COMPONENT)) {
-            ComponentNodeElement element = (ComponentNodeElement) elementStack.peek();
-            element.addComponentElement(currentComponentElement);
+            currentProperties = null;
         }
     }
 
 
-    private static List<Double> getSplits(Attributes attributes) {
-        String splits = attributes.getValue(Vocabulary.SPLITS);
-        if(splits != null) {
-            return parseSplits(splits);
-        }
-        else {
-            return Collections.EMPTY_LIST;
-        }
+    private SAXParseException createException(String message) {
+        return new SAXParseException(message, locator);
     }
 
-    private static List<Double> parseSplits(String splits) {
-        List<Double> list = new ArrayList<Double>();
-        StringTokenizer tokenizer = new StringTokenizer(splits.trim(), " ");
-        while(tokenizer.hasMoreTokens()) {
-            String curTok = tokenizer.nextToken();
-            list.add(Double.parseDouble(curTok));
-        }
-        return list;
-    }
-
-
-
-
-    private abstract class NodeElement {
-
-        private List<NodeElement> children;
 
-        public NodeElement() {
-            this.children = new ArrayList<NodeElement>();
-        }
-
-        public void addChildNodeElement(NodeElement child) {
-            children.add(child);
+    /**
+     * Parses a white space separated list of splits.
+     */
+    private double[] parseSplits(String splits) throws SAXException {
+        if(splits == null) {
+            return NO_SPLITS;
         }
-
-        public abstract Node createNode();
-
-        public List<Node> createChildNodes() {
-            List<Node> childNodes = new ArrayList<Node>();
-            for(NodeElement element : children) {
-                childNodes.add(element.createNode());
+        double[] values = new double[4];
+        int count = 0;
+        int length = splits.length();
+        int index = 0;
+        while(true) {
+            while(index < length && splits.charAt(index) <= ' ') {
+                index++;
+            }
+            if(index == length) {
+                break;
             }
-            return childNodes;
+            int start = index;
+            while(index < length && splits.charAt(index) > ' ') {
+                index++;
+            }
+            if(count == values.length) {
+                values = Arrays.copyOf(values, count * 2);
+            }
+            String split = splits.substring(start, index);
+            try {
+                values[count] = Double.parseDouble(split);
+            } catch (NumberFormatException e) {
+                throw createException("Invalid split: " + split);
+            }
+            count++;
         }
+        return Arrays.copyOf(values, count);
     }
 
-    private class ComponentNodeElement extends NodeElement {
-
-        private List<ComponentElement> componentElements;
 
-        public ComponentNodeElement() {
-            componentElements = new ArrayList<ComponentElement>();
-        }
-
-        public void addComponentElement(ComponentElement componentElement) {
-            componentElements.add(componentElement);
-        }
+    /**
+     * A splitter node whose element is open, so its children are still
+     * being read
+     */
+    private static class SplitterElement {
 
-        public Node createNode() {
-            ComponentNode cn = new ComponentNode();
-            for(ComponentElement element : componentElements) {
-                cn.add(element.createComponent(), element.getLabel());
-            }
-            return cn;
-        }
-    }
+        private int direction;
 
-    private abstract class SplitterElement extends NodeElement {
+        private double[] splits;
 
-        private List<Double> splits;
+        private List<Node> children;
 
-        protected SplitterElement(List<Double> splits) {
+        public SplitterElement(int direction, double[] splits) {
+            this.direction = direction;
             this.splits = splits;
+            children = new ArrayList<Node>(splits.length);
         }
 
-        public List<Double> getSplits() {
+        public double[] getSplits() {
             return splits;
         }
-    }
-
-    private class HorizontalSplitterElement extends SplitterElement {
-
-        public HorizontalSplitterElement(List<Double> splits) {
-            super(splits);
-        }
-
-        public Node createNode() {
-            return new HorizontalSplitterNode(createChildNodes(), getSplits());
-        }
-    }
-
-    private class VerticalSplitterElement extends SplitterElement {
-
-        public VerticalSplitterElement(List<Double> splits) {
-            super(splits);
-        }
 
-        public Node createNode() {
-            return new VerticalSplitterNode(createChildNodes(), getSplits());
+        public int getChildCount() {
+            return children.size();
         }
-    }
-
-
-    private class ComponentElement {
-
-        private String label;
 
-        private Map<String, String> properties;
-
-        public ComponentElement(String label) {
-            this.label = label;
-            properties = new HashMap<String, String>();
-        }
-
-        public String getLabel() {
-            return label;
-        }
-
-        public Map<String, String> getProperties() {
-            return properties;
-        }
-
-        public void putProperty(String id, String val) {
-            properties.put(id, val);
+        public void addChild(Node child) {
+            children.add(child);
         }
 
-        public JComponent createComponent() {
-            return componentFactory.createComponent(properties);
+        public SplitterNode createNode() {
+            if(direction == SplitterNode.HORIZONTAL_SPLITTER) {
+                return new HorizontalSplitterNode(children, splits);
+            }
+            else {
+                return new VerticalSplitterNode(children, splits);
+            }
         }
     }
 }
@@ -22,19 +22,14 @@ package org.coode.mdock;
  * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
  */
 
+import java.io.BufferedWriter;
 import java.io.Writer;
 import java.io.IOException;
+import java.util.Map;
 
-import org.w3c.dom.Document;
-
-import javax.xml.transform.Transformer;
+import javax.swing.*;
 import javax.xml.transform.TransformerException;
-import javax.xml.transform.TransformerFactory;
 import javax.xml.transform.TransformerFactoryConfigurationError;
-import javax.xml.transform.OutputKeys;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 
@@ -50,7 +45,8 @@ import javax.xml.parsers.ParserConfigurationException;
  * Developed as part of the CO-ODE project (http://www.co-ode.org)
  *
  * Given a node tree, a <code>NodeSerialiser</code> saves the node tree to
- * an node descriptor XML format.
+ * an node descriptor XML format.  The XML is streamed to the writer as the
+ * tree is visited, so no document is built in memory.
  */
 public class NodeSerialiser {
 
@@ -75,14 +71,266 @@ public class NodeSerialiser {
         this.writer = writer;
     }
 
+    /**
+     * Writes the node descriptor to the writer.  The writer is flushed, but
+     * not closed.
+     * @throws IOException if the descriptor could not be written.  The other
+     * exceptions are no longer thrown, and are only declared so that existing
+     * callers still compile.
+     */
     public void serialise() throws ParserConfigurationException, IOException, TransformerFactoryConfigurationError, TransformerException {
-        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
-        SerialisationNodeVisitor visitor = new SerialisationNodeVisitor(doc, factory);
-        node.accept(visitor);
-        Transformer transformer = TransformerFactory.newInstance().newTransformer();
-        transformer.setOutputProperty(OutputKeys.INDENT, "yes");
-        transformer.transform(new DOMSource(doc), new StreamResult(writer));
+        write();
+    }
+
+
+    /**
+     * Writes the node descriptor to the writer, without declaring the exceptions
+     * that are never thrown.
+     */
+    void write() throws IOException {
+        XMLWritingNodeVisitor visitor = new XMLWritingNodeVisitor(new BufferedWriter(writer));
+        visitor.writeDocument(node);
+    }
+
+
+    /**
+     * Gets the properties that a component can be reanimated from.
+     */
+    static Map<String, String> getProperties(JComponent component, ComponentPropertiesFactory factory) {
+        if (component instanceof PlaceholderComponent) {
+            // The component hasn't been created, so it still has the properties it was read with
+            return ((PlaceholderComponent) component).getProperties();
+        }
+        return factory.getProperties(component);
     }
 
 
+    /**
+     * Writes the elements for the nodes that it visits.  Visitors can't throw
+     * checked exceptions, so the first <code>IOException</code> is kept and
+     * rethrown once the visit is over.
+     */
+    private class XMLWritingNodeVisitor implements NodeVisitor {
+
+        /**
+         * Splits which are a multiple of 1/SPLIT_SCALE are written with a
+         * fixed number of decimal places
+         */
+        private static final long SPLIT_SCALE = 1000000000L;
+
+        private static final int SPLIT_DIGITS = 9;
+
+        private static final double MAX_FIXED_SPLIT = 1000000.0;
+
+        private static final int INDENT = 4;
+
+        private final Writer out;
+
+        private final char[] numberBuffer = new char[32];
+
+        private int depth;
+
+        private IOException exception;
+
+        public XMLWritingNodeVisitor(Writer out) {
+            this.out = out;
+        }
+
+        public void writeDocument(Node node) throws IOException {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<layout>\n");
+            depth = 1;
+            node.accept(this);
+            if (exception != null) {
+                throw exception;
+            }
+            out.write("</layout>\n");
+            out.flush();
+        }
+
+        public void visit(ComponentNode componentNode) {
+            if (exception != null) {
+                return;
+            }
+            try {
+                startElement(Vocabulary.COMPONENT_NODE);
+                out.write(">\n");
+                depth++;
+                for (JComponent component : componentNode.getComponents()) {
+                    startElement(Vocabulary.COMPONENT);
+                    writeAttribute(Vocabulary.LABEL, componentNode.getLabel(component));
+                    Map<String, String> properties = getProperties(component, factory);
+                    if (properties.isEmpty()) {
+                        out.write("/>\n");
+                        continue;
+                    }
+                    out.write(">\n");
+                    depth++;
+                    for (Map.Entry<String, String> property : properties.entrySet()) {
+                        startElement(Vocabulary.PROPERTY);
+                        writeAttribute(Vocabulary.ID, property.getKey());
+                        writeAttribute(Vocabulary.VALUE, property.getValue());
+                        out.write("/>\n");
+                    }
+                    depth--;
+                    endElement(Vocabulary.COMPONENT);
+                }
+                depth--;
+                endElement(Vocabulary.COMPONENT_NODE);
+            }
+            catch (IOException e) {
+                exception = e;
+            }
+        }
+
+        public void visit(VerticalSplitterNode verticalSplitterNode) {
+            visitSplitterNode(Vocabulary.VERTICAL_SPLITTER_NODE, verticalSplitterNode);
+        }
+
+        public void visit(HorizontalSplitterNode horizontalSplitterNode) {
+            visitSplitterNode(Vocabulary.HORIZONTAL_SPLITTER_NODE, horizontalSplitterNode);
+        }
+
+        private void visitSplitterNode(String name, SplitterNode splitterNode) {
+            if (exception != null) {
+                return;
+            }
+            try {
+                startElement(name);
+                out.write(' ');
+                out.write(Vocabulary.SPLITS);
+                out.write("=\"");
+                boolean first = true;
+                for (Node child : splitterNode.getVisibleChildren()) {
+                    if (!first) {
+                        out.write(' ');
+                    }
+                    writeSplit(splitterNode.getSplit(child));
+                    first = false;
+                }
+                out.write("\">\n");
+                depth++;
+                for (Node child : splitterNode.getVisibleChildren()) {
+                    child.accept(this);
+                }
+                depth--;
+                endElement(name);
+            }
+            catch (IOException e) {
+                exception = e;
+            }
+        }
+
+        private void indent() throws IOException {
+            for (int i = 0; i < depth * INDENT; i++) {
+                out.write(' ');
+            }
+        }
+
+        /**
+         * Writes the start of a start tag, leaving it open for attributes.
+         */
+        private void startElement(String name) throws IOException {
+            indent();
+            out.write('<');
+            out.write(name);
+        }
+
+        private void endElement(String name) throws IOException {
+            indent();
+            out.write("</");
+            out.write(name);
+            out.write(">\n");
+        }
+
+        private void writeAttribute(String name, String value) throws IOException {
+            out.write(' ');
+            out.write(name);
+            out.write("=\"");
+            if (value != null) {
+                writeEscaped(value);
+            }
+            out.write('"');
+        }
+
+        /**
+         * Writes attribute text, escaping markup characters, and the white space
+         * characters that would otherwise be normalised away when read back.  The
+         * other control characters can't appear in an XML 1.0 document, even as
+         * character references, so they are left out.
+         */
+        private void writeEscaped(String value) throws IOException {
+            int start = 0;
+            int length = value.length();
+            for (int i = 0; i < length; i++) {
+                char c = value.charAt(i);
+                String replacement;
+                if (c == '&') {
+                    replacement = "&amp;";
+                }
+                else if (c == '<') {
+                    replacement = "&lt;";
+                }
+                else if (c == '>') {
+                    replacement = "&gt;";
+                }
+                else if (c == '"') {
+                    replacement = "&quot;";
+                }
+                else if (c == '\t') {
+                    replacement = "&#9;";
+                }
+                else if (c == '\n') {
+                    replacement = "&#10;";
+                }
+                else if (c == '\r') {
+                    replacement = "&#13;";
+                }
+                else if (c < ' ') {
+                    replacement = "";
+                }
+                else {
+                    continue;
+                }
+                out.write(value, start, i - start);
+                out.write(replacement);
+                start = i + 1;
+            }
+            out.write(value, start, length - start);
+        }
+
+        /**
+         * Writes a split.  Splits which are an exact multiple of 1/SPLIT_SCALE
+         * (which includes those set from common fractions such as 0.25) are
+         * formatted directly into a buffer.  Other splits use
+         * <code>Double.toString</code>, which always reads back as the same value,
+         * but which uses computerised scientific notation (for example
+         * <code>1.0E-10</code>) for very small and very large splits.
+         */
+        private void writeSplit(double split) throws IOException {
+            long scaled = (long) (split * SPLIT_SCALE);
+            if (split < 0 || split >= MAX_FIXED_SPLIT || (double) scaled / SPLIT_SCALE != split) {
+                out.write(Double.toString(split));
+                return;
+            }
+            int pos = numberBuffer.length;
+            long fraction = scaled % SPLIT_SCALE;
+            int digits = SPLIT_DIGITS;
+            while (digits > 1 && fraction % 10 == 0) {
+                fraction /= 10;
+                digits--;
+            }
+            for (int i = 0; i < digits; i++) {
+                numberBuffer[--pos] = (char) ('0' + fraction % 10);
+                fraction /= 10;
+            }
+            numberBuffer[--pos] = '.';
+            long whole = scaled / SPLIT_SCALE;
+            do {
+                numberBuffer[--pos] = (char) ('0' + whole % 10);
+                whole /= 10;
+            } while (whole != 0);
+            out.write(numberBuffer, pos, numberBuffer.length - pos);
+        }
+    }
 }
@@ -0,0 +1,52 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import javax.swing.*;
+
+
+/**
+ * An abstract adapter class for receiving node tree notifications.  The methods
+ * in this class are empty, so that subclasses only need to override the methods
+ * for the notifications that they are interested in.
+ */
+public abstract class NodeTreeAdapter implements NodeTreeListener {
+
+    public void childInserted(SplitterNode parent, Node child, int index) {
+    }
+
+    public void childRemoved(SplitterNode parent, Node child, int index) {
+    }
+
+    public void splitChanged(SplitterNode parent, Node child) {
+    }
+
+    public void visibilityChanged(Node node) {
+    }
+
+    public void componentAdded(ComponentNode node, JComponent component) {
+    }
+
+    public void componentRemoved(ComponentNode node, JComponent component) {
+    }
+}
@@ -0,0 +1,157 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import javax.swing.*;
+
+
+/**
+ * A change to a node tree which is to be delivered to the {@link NodeTreeListener}s
+ * of the node where the change happened and of each of its ancestors.
+ */
+final class NodeTreeEvent {
+
+    private static final int CHILD_INSERTED = 0;
+
+    private static final int CHILD_REMOVED = 1;
+
+    private static final int SPLIT_CHANGED = 2;
+
+    private static final int VISIBILITY_CHANGED = 3;
+
+    private static final int COMPONENT_ADDED = 4;
+
+    private static final int COMPONENT_REMOVED = 5;
+
+    private final int type;
+
+    /**
+     * The node where the change happened, which is where delivery starts
+     */
+    private final Node source;
+
+    private final Node node;
+
+    private final int index;
+
+    private final JComponent component;
+
+    /**
+     * The source node and its ancestors at the time that the event was
+     * posted.  The event is delivered along this route even if the tree
+     * has changed by the time it is delivered.
+     */
+    private Node[] route;
+
+
+    private NodeTreeEvent(int type, Node source, Node node, int index, JComponent component) {
+        this.type = type;
+        this.source = source;
+        this.node = node;
+        this.index = index;
+        this.component = component;
+    }
+
+    public static NodeTreeEvent childInserted(SplitterNode parent, Node child, int index) {
+        return new NodeTreeEvent(CHILD_INSERTED, parent, child, index, null);
+    }
+
+    public static NodeTreeEvent childRemoved(SplitterNode parent, Node child, int index) {
+        return new NodeTreeEvent(CHILD_REMOVED, parent, child, index, null);
+    }
+
+    public static NodeTreeEvent splitChanged(SplitterNode parent, Node child) {
+        return new NodeTreeEvent(SPLIT_CHANGED, parent, child, -1, null);
+    }
+
+    public static NodeTreeEvent visibilityChanged(Node node) {
+        return new NodeTreeEvent(VISIBILITY_CHANGED, node, node, -1, null);
+    }
+
+    public static NodeTreeEvent componentAdded(ComponentNode node, JComponent component) {
+        return new NodeTreeEvent(COMPONENT_ADDED, node, node, -1, component);
+    }
+
+    public static NodeTreeEvent componentRemoved(ComponentNode node, JComponent component) {
+        return new NodeTreeEvent(COMPONENT_REMOVED, node, node, -1, component);
+    }
+
+    public Node getSource() {
+        return source;
+    }
+
+    /**
+     * Records the source node and its current ancestors as the nodes whose
+     * listeners this event will be delivered to.
+     */
+    public void captureRoute() {
+        int length = 0;
+        for (Node curNode = source; curNode != null; curNode = curNode.getParent()) {
+            length++;
+        }
+        route = new Node[length];
+        int index = 0;
+        for (Node curNode = source; curNode != null; curNode = curNode.getParent()) {
+            route[index] = curNode;
+            index++;
+        }
+    }
+
+    /**
+     * Delivers this event to the listeners of the source node and the listeners
+     * of each of the ancestors that it had when the route was captured.
+     */
+    public void deliver() {
+        if (route == null) {
+            captureRoute();
+        }
+        for (Node curNode : route) {
+            for (NodeTreeListener listener : curNode.getNodeTreeListeners()) {
+                deliver(listener);
+            }
+        }
+    }
+
+    private void deliver(NodeTreeListener listener) {
+        switch (type) {
+            case CHILD_INSERTED:
+                listener.childInserted((SplitterNode) source, node, index);
+                break;
+            case CHILD_REMOVED:
+                listener.childRemoved((SplitterNode) source, node, index);
+                break;
+            case SPLIT_CHANGED:
+                listener.splitChanged((SplitterNode) source, node);
+                break;
+            case VISIBILITY_CHANGED:
+                listener.visibilityChanged(node);
+                break;
+            case COMPONENT_ADDED:
+                listener.componentAdded((ComponentNode) node, component);
+                break;
+            case COMPONENT_REMOVED:
+                listener.componentRemoved((ComponentNode) node, component);
+                break;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import javax.swing.*;
+import java.util.EventListener;
+
+
+/**
+ * Receives notifications of changes to a node tree.  A listener which is added
+ * to a node (see {@link Node#addNodeTreeListener(NodeTreeListener)}) is notified of
+ * changes to that node and to any of its descendants.  Notifications are made once
+ * the tree is in a consistent state.  Changes that are made during an edit (see
+ * {@link Node#edit(NodeEdit)}) are notified, in order, when the edit completes.
+ */
+public interface NodeTreeListener extends EventListener {
+
+    /**
+     * Called when a child node has been inserted into a splitter node.
+     * @param parent The splitter node.
+     * @param child The child node that was inserted.
+     * @param index The index of the child within all of the children
+     * (visible and invisible) of the parent.
+     */
+    void childInserted(SplitterNode parent, Node child, int index);
+
+    /**
+     * Called when a child node has been removed from a splitter node.
+     * @param parent The splitter node.
+     * @param child The child node that was removed.
+     * @param index The index that the child had within the children of the parent.
+     */
+    void childRemoved(SplitterNode parent, Node child, int index);
+
+    /**
+     * Called when the split of a child node has been changed.
+     * @param parent The splitter node which holds the split.
+     * @param child The child node whose split was changed.
+     */
+    void splitChanged(SplitterNode parent, Node child);
+
+    /**
+     * Called when a node has been explicitly shown or hidden, or when a component
+     * node has gained its first component or lost its last component.
+     * @param node The node whose visibility changed.
+     */
+    void visibilityChanged(Node node);
+
+    /**
+     * Called when a component has been added to a component node.
+     * @param node The component node.
+     * @param component The component that was added.
+     */
+    void componentAdded(ComponentNode node, JComponent component);
+
+    /**
+     * Called when a component has been removed from a component node.
+     * @param node The component node.
+     * @param component The component that was removed.
+     */
+    void componentRemoved(ComponentNode node, JComponent component);
+}
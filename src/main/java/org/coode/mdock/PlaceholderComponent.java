@@ -0,0 +1,86 @@
+package org.coode.mdock;
+/*
+ * Copyright (C) 2007, University of Manchester
+ *
+ * Modifications to the initial code base are copyright of their
+ * respective authors, or their employers as appropriate.  Authorship
+ * of the modifications may be determined from the ChangeLog placed at
+ * the end of this file.
+ *
+ * This library is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+
+ * This library is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+
+import javax.swing.*;
+import java.awt.event.HierarchyEvent;
+import java.awt.event.HierarchyListener;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+
+/**
+ * A lightweight stand-in for a component which hasn't been created yet.  A placeholder
+ * holds the properties which a {@link ComponentFactory} needs to create the real component.
+ * It can be added to a {@link ComponentNode} (see {@link ComponentNode#addPlaceholder(String, ComponentFactory, Map)}),
+ * and the node replaces it with the real component the first time that it is shown,
+ * for example when its tab is selected.  This means that the components behind tabs
+ * that are never selected are never created.
+ */
+public class PlaceholderComponent extends JPanel {
+
+    private ComponentFactory componentFactory;
+
+    private Map<String, String> properties;
+
+    public PlaceholderComponent(ComponentFactory componentFactory, Map<String, String> properties) {
+        this.componentFactory = componentFactory;
+        this.properties = new HashMap<String, String>(properties);
+        addHierarchyListener(new HierarchyListener() {
+            public void hierarchyChanged(HierarchyEvent e) {
+                if ((e.getChangeFlags() & HierarchyEvent.SHOWING_CHANGED) != 0 && isShowing()) {
+                    // The hierarchy can't be changed whilst the event is being dispatched
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            materialise();
+                        }
+                    });
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the properties that the real component will be created from.
+     * @return The properties
+     */
+    public Map<String, String> getProperties() {
+        return Collections.unmodifiableMap(properties);
+    }
+
+    /**
+     * Creates the real component.
+     * @return The component created by the component factory
+     */
+    public JComponent createComponent() {
+        return componentFactory.createComponent(properties);
+    }
+
+    private void materialise() {
+        ComponentNode node = ComponentNode.getComponentNode(this);
+        if (node != null && isShowing()) {
+            node.materialise(this);
+        }
+    }
+}
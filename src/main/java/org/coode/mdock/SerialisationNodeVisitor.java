@@ -98,7 +98,7 @@ public class SerialisationNodeVisitor extends TraversalNodeVisitor {
     }
 
     protected Map<String, String> getProperties(JComponent component) {
-        return componentPropertiesFactory.getProperties(component);
+        return NodeSerialiser.getProperties(component, componentPropertiesFactory);
     }
 
     private String getSplitAttributeValue(List<Double> splits) {
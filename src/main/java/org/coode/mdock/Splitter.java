@@ -24,6 +24,8 @@ package org.coode.mdock;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
@@ -46,6 +48,23 @@ public abstract class Splitter extends JPanel {
 
     public static final int SPLITTER_WIDTH = 6;
 
+    /**
+     * The splitter is inset by a pixel from each side of the gap between its
+     * children, so its location is this far before the boundary between them.
+     */
+    static final int BOUNDARY_OFFSET = SPLITTER_WIDTH / 2 - 1;
+
+    /**
+     * The offset of the splitter from the start of its children across its length.
+     */
+    static final int LENGTH_OFFSET = SPLITTER_WIDTH / 2 + 1;
+
+    /**
+     * The delay, in milliseconds, between relayouts whilst a
+     * splitter is being dragged in live resize mode (roughly a display frame).
+     */
+    private static final int LIVE_RESIZE_DELAY = 16;
+
     private SplitterNode node;
 
     private Node child0;
@@ -60,6 +79,46 @@ public abstract class Splitter extends JPanel {
 
     private Cursor defaultCursor;
 
+    private double startSplit0;
+
+    private double startSplit1;
+
+    private int startChildSpan;
+
+    /**
+     * Fires at most once per frame whilst the splitter is being
+     * dragged in live resize mode.
+     */
+    private Timer liveResizeTimer;
+
+    /**
+     * The drag mode of the panel at the start of the current drag
+     */
+    private int dragMode;
+
+    /**
+     * The limits of the location of the splitter during the current drag, which
+     * are worked out at the start of the drag
+     */
+    private boolean dragging;
+
+    private int minDragX;
+
+    private int minDragY;
+
+    private int maxDragX;
+
+    private int maxDragY;
+
+    /**
+     * In overlay drag mode, the location that the splitter has been dragged to
+     */
+    private boolean overlayShowing;
+
+    private int overlayX;
+
+    private int overlayY;
+
     protected Splitter(SplitterNode node, Node child0, Node child1) {
         this.node = node;
         this.child0 = child0;
@@ -95,8 +154,17 @@ public abstract class Splitter extends JPanel {
         });
         addMouseMotionListener(new MouseMotionAdapter() {
             public void mouseDragged(MouseEvent e) {
-                Point p = SwingUtilities.convertPoint(Splitter.this, e.getPoint(), getParent());
-                setLocation(p);
+                // The parent is the panel that the splitter is in
+                int x = getX() + e.getX();
+                int y = getY() + e.getY();
+                if (mouseDown && dragMode == NodePanel.OVERLAY_DRAG_MODE) {
+                    moveOverlay(x, y);
+                    return;
+                }
+                setLocation(x, y);
+                if (mouseDown && dragMode == NodePanel.LIVE_RESIZE_DRAG_MODE) {
+                    scheduleLiveResize();
+                }
             }
         });
     }
@@ -108,21 +176,24 @@ public abstract class Splitter extends JPanel {
     }
 
     public void setLocation(int x, int y) {
+        if (dragging) {
+            super.setLocation(clamp(x, minDragX, maxDragX), clamp(y, minDragY, maxDragY));
+        }
+        else {
             Point minLoc = getMinLocation();
             Point maxLoc = getMaxLocation();
-            if(x < minLoc.x) {
-                x = minLoc.x;
-            }
-            if(y < minLoc.y) {
-                y = minLoc.y;
-            }
-            if(x > maxLoc.x) {
-                x = maxLoc.x;
-            }
-            if(y > maxLoc.y) {
-                y = maxLoc.y;
-            }
-            super.setLocation(x, y);
+            super.setLocation(clamp(x, minLoc.x, maxLoc.x), clamp(y, minLoc.y, maxLoc.y));
+        }
+    }
+
+    private static int clamp(int value, int min, int max) {
+        if(value < min) {
+            return min;
+        }
+        if(value > max) {
+            return max;
+        }
+        return value;
     }
 
     public SplitterNode getNode() {
@@ -139,12 +210,45 @@ public abstract class Splitter extends JPanel {
 
     public abstract void resetBounds();
 
+    /**
+     * Gets the furthest location that the splitter can be dragged to, which leaves
+     * child1 at least its minimum size.
+     */
     public abstract Point getMaxLocation();
 
+    /**
+     * Gets the nearest location that the splitter can be dragged to, which leaves
+     * child0 at least its minimum size.
+     */
     public abstract Point getMinLocation();
 
     public void startDragging(Point pt) {
         startPoint = getLocation();
+        startSplit0 = getNode().getSplit(getChild0());
+        startSplit1 = getNode().getSplit(getChild1());
+        startChildSpan = getSpan(getChild0(), getParent(), false) + getSpan(getChild1(), getParent(), false);
+        dragMode = getDragMode();
+        // The layout doesn't change until the drag ends (or, in live resize mode,
+        // only the children either side of the splitter change) so the limits are
+        // worked out once, and each drag event just clamps against them
+        Point minLoc = getMinLocation();
+        Point maxLoc = getMaxLocation();
+        if (minLoc.x <= maxLoc.x && minLoc.y <= maxLoc.y) {
+            minDragX = minLoc.x;
+            minDragY = minLoc.y;
+            maxDragX = maxLoc.x;
+            maxDragY = maxLoc.y;
+        }
+        else {
+            // There isn't room for the minimum sizes of both children
+            minDragX = maxDragX = startPoint.x;
+            minDragY = maxDragY = startPoint.y;
+        }
+        dragging = true;
+        if (dragMode == NodePanel.OVERLAY_DRAG_MODE) {
+            overlayX = startPoint.x;
+            overlayY = startPoint.y;
+        }
     }
 
     protected abstract int convertToLocation(Point pt);
@@ -152,22 +256,107 @@ public abstract class Splitter extends JPanel {
     protected abstract int getSpan(Node child, Component parent, boolean includingSplitter);
 
     public void endDragging(Point pt) {
-        endPoint = getLocation();
-        // Work out the new child splits
-        int delta = convertToLocation(endPoint) - convertToLocation(startPoint);
-        // Normalise the delta against the total height out the children
-        int totalChildSpan = getSpan(getChild0(), getParent(), false) + getSpan(getChild1(), getParent(), false);
+        if (liveResizeTimer != null) {
+            liveResizeTimer.stop();
+        }
+        dragging = false;
+        if (overlayShowing) {
+            // The splitter itself hasn't moved yet
+            endPoint = new Point(overlayX, overlayY);
+            overlayShowing = false;
+            ((NodePanel) getParent()).clearSplitterOverlay();
+        }
+        else {
+            endPoint = getLocation();
+        }
+        applySplits(endPoint);
+        relayout();
+    }
 
-        double span = getNode().getSplit(getChild0()) + getNode().getSplit(getChild1());
 
-        double splitterDelta = (span * delta) / (totalChildSpan);
+    private int getDragMode() {
+        Container parent = getParent();
+        if (parent instanceof NodePanel) {
+            return ((NodePanel) parent).getSplitterDragMode();
+        }
+        return NodePanel.DEFERRED_RESIZE_DRAG_MODE;
+    }
 
-        double split0 = (getNode().getSplit(getChild0()) + splitterDelta);
-        double split1 = (getNode().getSplit(getChild1()) - splitterDelta);
-        getNode().setSplit(getChild0(), split0);
-        getNode().setSplit(getChild1(), split1);
-        getParent().validate();
+
+    /**
+     * Moves the outline of this splitter, which the panel paints over its
+     * children, rather than the splitter itself.  Only the old and new outlines
+     * are repainted.
+     */
+    private void moveOverlay(int x, int y) {
+        overlayX = clamp(x, minDragX, maxDragX);
+        overlayY = clamp(y, minDragY, maxDragY);
+        overlayShowing = true;
+        ((NodePanel) getParent()).setSplitterOverlay(overlayX, overlayY, getWidth(), getHeight());
+    }
+
+
+    /**
+     * Arranges for the nodes either side of this splitter to be resized
+     * to its current location.  Any number of drag events that occur before
+     * the next frame result in a single relayout, and a further relayout isn't
+     * scheduled until the last one has been carried out, so the relayouts never
+     * back up on the event dispatch thread.
+     */
+    private void scheduleLiveResize() {
+        if (liveResizeTimer == null) {
+            liveResizeTimer = new Timer(LIVE_RESIZE_DELAY, new ActionListener() {
+                public void actionPerformed(ActionEvent e) {
+                    liveResize();
+                }
+            });
+            liveResizeTimer.setRepeats(false);
+        }
+        if (!liveResizeTimer.isRunning()) {
+            liveResizeTimer.start();
+        }
+    }
+
+
+    private void liveResize() {
+        if (!mouseDown || getParent() == null) {
+            return;
+        }
+        applySplits(getLocation());
+        relayout();
     }
 
 
+    private void relayout() {
+        // Only the subtrees of child0 and child1 have changed, so
+        // the layout only re-bounds those
+        Container parent = getParent();
+        parent.invalidate();
+        parent.validate();
+    }
+
+
+    /**
+     * Sets the splits of child0 and child1 so that the boundary between them
+     * lies at the specified location.  The splits are worked
+     * out from those at the start of the drag, so that rounding errors don't
+     * accumulate over the course of the drag.
+     */
+    private void applySplits(Point location) {
+        // Work out the new child splits
+        int delta = convertToLocation(location) - convertToLocation(startPoint);
+        if (startChildSpan == 0) {
+            return;
+        }
+        // Normalise the delta against the total span of the children
+        double span = startSplit0 + startSplit1;
+        double splitterDelta = (span * delta) / startChildSpan;
+        double split0 = startSplit0 + splitterDelta;
+        double split1 = startSplit1 - splitterDelta;
+        if (split0 == getNode().getSplit(getChild0()) && split1 == getNode().getSplit(getChild1())) {
+            return;
+        }
+        getNode().setSplit(getChild0(), split0);
+        getNode().setSplit(getChild1(), split1);
+    }
 }
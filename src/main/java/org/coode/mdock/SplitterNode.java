@@ -50,10 +50,47 @@ public abstract class SplitterNode extends Node {
 
     private List<Node> children;
 
-    private Map<Node, Double> nodeSplits;
+    /**
+     * An immutable snapshot of the visible children, or <code>null</code>
+     * if it needs to be recomputed because the state of this node or one of
+     * its children has changed.
+     */
+    private List<Node> visibleChildren;
+
+    private int visibleDescendantCount;
+
+    /**
+     * The splits of the children, where the split at index i is the
+     * split of the child at index i.  Only the first children.size()
+     * entries are in use.
+     */
+    private double[] splits;
+
+    /**
+     * The running total of the splits of the visible children.  Entry
+     * i holds the sum of the splits of the visible children that come before
+     * the ith visible child, the last entry holds the child span.
+     */
+    private double[] visibleSplitOffsets;
+
+    /**
+     * Maps the index of a child to its index amongst the visible
+     * children, or -1 if the child isn't visible.
+     */
+    private int[] visibleIndices;
+
+    private int visibleChildCount;
+
+    private boolean splitOffsetsValid;
 
     private List<Splitter> splitters;
 
+    /**
+     * <code>false</code> if the splitters need to be brought up to date
+     * with the visible children.
+     */
+    private boolean splittersValid;
+
     public static final int HORIZONTAL_SPLITTER = 0;
 
     public static final int VERTICAL_SPLITTER = 1;
@@ -69,21 +106,152 @@ public abstract class SplitterNode extends Node {
      * the number of children.
      */
     public SplitterNode(List<? extends Node> children, List<Double> splits) {
-        if (children.size() != splits.size()) {
+        this(children, toSplitArray(splits));
+    }
+
+
+    /**
+     * Creates a splitter node that contains the specified children.
+     * @param children The children.
+     * @param splits The splits of the children.  The number of splits must
+     * be equal to the number of children.  The array is copied.
+     * @throws IllegalArgumentException if the number of splits is not equal to
+     * the number of children.
+     */
+    public SplitterNode(List<? extends Node> children, double[] splits) {
+        if (children.size() != splits.length) {
             throw new IllegalArgumentException("The number of splits must correspond to the number of children");
         }
         this.children = new ArrayList<Node>(children);
-        nodeSplits = new IdentityHashMap<Node, Double>();
-        int index = 0;
+        this.splits = new double[Math.max(children.size(), 2)];
+        System.arraycopy(splits, 0, this.splits, 0, splits.length);
         for (Node node : children) {
             node.setParent(this);
-            nodeSplits.put(node, splits.get(index));
-            index++;
         }
+        reindexChildren(0);
         createSplitters();
     }
 
 
+    private static double[] toSplitArray(List<Double> splits) {
+        double[] array = new double[splits.size()];
+        int index = 0;
+        for (Double split : splits) {
+            array[index] = split;
+            index++;
+        }
+        return array;
+    }
+
+
+    /**
+     * Gets the index of the specified child in the list of all
+     * children (visible and invisible).
+     * @param child The child
+     * @return The index of the child, or -1 if the node is not a child of this node
+     */
+    private int indexOfChild(Node child) {
+        int index = child.getIndexInParent();
+        if (child.getParent() == this && index < children.size() && children.get(index) == child) {
+            return index;
+        }
+        return children.indexOf(child);
+    }
+
+
+    private int checkedIndexOfChild(Node child) {
+        int index = indexOfChild(child);
+        if (index == -1) {
+            throw new IllegalArgumentException("The specified node is not a child of this node");
+        }
+        return index;
+    }
+
+
+    private void reindexChildren(int fromIndex) {
+        for (int i = fromIndex; i < children.size(); i++) {
+            children.get(i).setIndexInParent(i);
+        }
+        visibleChildren = null;
+        splitOffsetsValid = false;
+        splittersValid = false;
+    }
+
+
+    private void ensureVisibleChildren() {
+        if (visibleChildren != null) {
+            return;
+        }
+        List<Node> visible = new ArrayList<Node>(children.size());
+        int descendantCount = 0;
+        for (Node curChild : children) {
+            if (curChild.isVisible()) {
+                visible.add(curChild);
+                if (curChild instanceof SplitterNode) {
+                    descendantCount += ((SplitterNode) curChild).getVisibleDescendantCount();
+                }
+                else {
+                    descendantCount++;
+                }
+            }
+        }
+        // A new list rather than a refilled one, so that lists which have
+        // already been handed out remain valid snapshots
+        visibleChildren = Collections.unmodifiableList(visible);
+        visibleDescendantCount = descendantCount;
+        splitOffsetsValid = false;
+    }
+
+
+    private void ensureSplitOffsets() {
+        ensureVisibleChildren();
+        if (splitOffsetsValid) {
+            return;
+        }
+        int childCount = children.size();
+        if (visibleIndices == null || visibleIndices.length < childCount) {
+            visibleIndices = new int[splits.length];
+            visibleSplitOffsets = new double[splits.length + 1];
+        }
+        double offset = 0.0;
+        int visibleIndex = 0;
+        for (int i = 0; i < childCount; i++) {
+            if (children.get(i).isVisible()) {
+                visibleSplitOffsets[visibleIndex] = offset;
+                visibleIndices[i] = visibleIndex;
+                offset += splits[i];
+                visibleIndex++;
+            }
+            else {
+                visibleIndices[i] = -1;
+            }
+        }
+        visibleSplitOffsets[visibleIndex] = offset;
+        visibleChildCount = visibleIndex;
+        splitOffsetsValid = true;
+    }
+
+
+    private void insertSplit(int index, double split) {
+        int childCount = children.size();
+        if (childCount > splits.length) {
+            double[] grown = new double[splits.length * 2];
+            System.arraycopy(splits, 0, grown, 0, index);
+            System.arraycopy(splits, index, grown, index + 1, childCount - 1 - index);
+            splits = grown;
+        }
+        else {
+            System.arraycopy(splits, index, splits, index + 1, childCount - 1 - index);
+        }
+        splits[index] = split;
+    }
+
+
+    private void removeSplit(int index) {
+        System.arraycopy(splits, index + 1, splits, index, children.size() - index);
+    }
+
+
     /**
      * Gets the split of the specified node.  This node
      * must be a child node.
@@ -92,7 +260,7 @@ public abstract class SplitterNode extends Node {
      *
      */
     public double getSplit(Node node) {
-        return nodeSplits.get(node);
+        return splits[checkedIndexOfChild(node)];
     }
 
 
@@ -101,11 +269,11 @@ public abstract class SplitterNode extends Node {
      * @return A list of child node splits
      */
     public List<Double> getSplits() {
-        List<Double> splits = new ArrayList<Double>();
+        List<Double> visibleSplits = new ArrayList<Double>();
         for (Node curNode : getVisibleChildren()) {
-            splits.add(nodeSplits.get(curNode));
+            visibleSplits.add(splits[indexOfChild(curNode)]);
         }
-        return splits;
+        return visibleSplits;
     }
 
 
@@ -115,7 +283,14 @@ public abstract class SplitterNode extends Node {
      * @param split The value of the split.
      */
     public void setSplit(Node node, double split) {
-        nodeSplits.put(node, split);
+        splits[checkedIndexOfChild(node)] = split;
+        splitOffsetsValid = false;
+        // Only our subtree is affected by the change
+        LayoutGeometry geometry = getCachedLayoutGeometry();
+        if (geometry != null) {
+            geometry.invalidate(this);
+        }
+        postNodeTreeEvent(NodeTreeEvent.splitChanged(this, node));
     }
 
 
@@ -127,7 +302,7 @@ public abstract class SplitterNode extends Node {
      * @return The normalised split of the specified node
      */
     public double getNormalisedSplit(Node node) {
-        double split = nodeSplits.get(node);
+        double split = getSplit(node);
         return split / getChildSpan();
     }
 
@@ -137,29 +312,89 @@ public abstract class SplitterNode extends Node {
      * @return The sum of the splits
      */
     public double getChildSpan() {
-        double span = 0.0;
-        for (Node node : getVisibleChildren()) {
-            span += nodeSplits.get(node);
+        ensureSplitOffsets();
+        return visibleSplitOffsets[visibleChildCount];
+    }
+
+
+    /**
+     * Gets the sum of the splits of the visible children that come
+     * before the specified child.
+     * @param node The child node, which must be visible.
+     * @return The offset of the child, which, when divided by the child span,
+     * gives the normalised position of the child within this node.
+     */
+    public double getChildOffset(Node node) {
+        ensureSplitOffsets();
+        int visibleIndex = visibleIndices[checkedIndexOfChild(node)];
+        if (visibleIndex == -1) {
+            throw new IllegalArgumentException("The specified node is not visible");
         }
-        return span;
+        return visibleSplitOffsets[visibleIndex];
     }
 
 
     /**
-     * Gets a list of visible child nodes.
-     * @return The list of children.
+     * Gets the visible child which covers the specified offset.  This is
+     * a binary search over the offsets of the visible children.
+     * @param offset The offset, in the same units as the splits (i.e. between
+     * zero and the child span).
+     * @return The visible child that covers the offset.  Offsets before the first
+     * child or after the last child are clamped to those children.  <code>null</code>
+     * is returned if there are no visible children.
      */
-    public List<Node> getVisibleChildren() {
-        List<Node> visibleChildren = new ArrayList<Node>();
-        for (Node curChild : children) {
-            if (curChild.isVisible()) {
-                visibleChildren.add(curChild);
+    public Node getVisibleChildAt(double offset) {
+        ensureSplitOffsets();
+        if (visibleChildCount == 0) {
+            return null;
+        }
+        // Find the last visible child whose offset is less than or equal to the offset
+        int low = 0;
+        int high = visibleChildCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (visibleSplitOffsets[mid] <= offset) {
+                low = mid;
+            }
+            else {
+                high = mid - 1;
             }
         }
+        return visibleChildren.get(low);
+    }
+
+
+    /**
+     * Gets a list of visible child nodes.  The list is an immutable
+     * snapshot which is shared between callers until the state of this
+     * node changes.
+     * @return The list of children.
+     */
+    public List<Node> getVisibleChildren() {
+        ensureVisibleChildren();
         return visibleChildren;
     }
 
 
+    /**
+     * Gets the number of children, visible and invisible.
+     */
+    int getChildCount() {
+        return children.size();
+    }
+
+
+    /**
+     * Gets the number of visible leaf nodes (typically component
+     * nodes) that are contained in this node.
+     * @return The number of visible leaf nodes below this node.
+     */
+    public int getVisibleDescendantCount() {
+        ensureVisibleChildren();
+        return visibleDescendantCount;
+    }
+
+
     /**
      * Determines if this node is visible.  A splitter node is
      * deemed to be visible if at least one child is visible.
@@ -167,25 +402,37 @@ public abstract class SplitterNode extends Node {
      * or <code>false</code> if it is not visible.
      */
     public boolean isVisible() {
-        // We are visible if at least one of our children is visible
-        for (Node node : children) {
-            if (node.isVisible()) {
-                return true;
-            }
-        }
-        return false;
+        // We are visible if at least one of our descendants is visible
+        return getVisibleDescendantCount() > 0;
     }
 
 
+    /**
+     * Brings the splitters up to date with the visible children.  Splitters are keyed
+     * by the pair of children that they separate, so an existing splitter is reused if
+     * its pair of children are still adjacent.  Only splitters whose neighbours have
+     * changed are created (or discarded).
+     */
     private void createSplitters() {
-        splitters = new ArrayList<Splitter>();
-        splitters.clear();
+        Map<Node, Splitter> existingSplitters = new IdentityHashMap<Node, Splitter>();
+        if (splitters != null) {
+            for (Splitter splitter : splitters) {
+                existingSplitters.put(splitter.getChild0(), splitter);
+            }
+        }
+        List<Splitter> updatedSplitters = new ArrayList<Splitter>();
         List<Node> visibleChildren = getVisibleChildren();
         for (int i = 0; i < visibleChildren.size() - 1; i++) {
             Node child0 = visibleChildren.get(i);
             Node child1 = visibleChildren.get(i + 1);
-            splitters.add(createSplitter(child0, child1));
+            Splitter splitter = existingSplitters.get(child0);
+            if (splitter == null || splitter.getChild1() != child1) {
+                splitter = createSplitter(child0, child1);
+            }
+            updatedSplitters.add(splitter);
         }
+        splitters = updatedSplitters;
+        splittersValid = true;
     }
 
 
@@ -200,13 +447,29 @@ public abstract class SplitterNode extends Node {
 
 
     public final List<Splitter> getSplitters() {
-        if (splitters == null) {
+        if (!splittersValid) {
             createSplitters();
         }
         return splitters;
     }
 
 
+    private void insertChild(Node child, int index, double split) {
+        children.add(index, child);
+        insertSplit(index, split);
+        child.setParent(this);
+        reindexChildren(index);
+        invalidateLayoutGeometry();
+    }
+
+
+    private void removeChildAt(int index) {
+        children.remove(index);
+        removeSplit(index);
+        reindexChildren(index);
+    }
+
+
     /**
      * Adds a child of this node.
      * @param child The child node to be added
@@ -215,27 +478,29 @@ public abstract class SplitterNode extends Node {
      *              receive
      */
     protected void addChild(Node child, int index, double split) {
-        children.add(index, child);
-        nodeSplits.put(child, split);
-        child.setParent(this);
+        insertChild(child, index, split);
+        notifyStateChange();
+        postNodeTreeEvent(NodeTreeEvent.childInserted(this, child, index));
     }
 
     public void addChild(Node child, double split) {
-        children.add(child);
-        nodeSplits.put(child, split);
-        child.setParent(this);
-        notifyStateChange();
+        addChild(child, children.size(), split);
     }
 
 
     public void removeChild(Node child) {
-        children.remove(child);
-        nodeSplits.remove(child);
+        int index = indexOfChild(child);
+        if (index != -1) {
+            removeChildAt(index);
+        }
         child.setParent(null);
+        notifyStateChange();
+        if (index != -1) {
+            postNodeTreeEvent(NodeTreeEvent.childRemoved(this, child, index));
+        }
         if (children.isEmpty()) {
             remove();
         }
-        notifyStateChange();
     }
 
 
@@ -253,12 +518,11 @@ public abstract class SplitterNode extends Node {
         if (isSplitterDirection(direction)) {
             double split = getSplit(before) / 2;
             setSplit(before, split);
-            addChild(insert, children.indexOf(before), split);
+            addChild(insert, checkedIndexOfChild(before), split);
         }
         else {
             pushDown(before, insert, before);
         }
-        notifyStateChange();
     }
 
 
@@ -273,12 +537,11 @@ public abstract class SplitterNode extends Node {
         if (isSplitterDirection(direction)) {
             double split = getSplit(after) / 2;
             setSplit(after, split);
-            addChild(insert, children.indexOf(after) + 1, split);
+            addChild(insert, checkedIndexOfChild(after) + 1, split);
         }
         else {
             pushDown(after, after, insert);
         }
-        notifyStateChange();
     }
 
      /**
@@ -289,8 +552,7 @@ public abstract class SplitterNode extends Node {
       *   @param split The weight
      */
     public void insertNodeAfter(Node insert, Node after, double split) {
-        addChild(insert, children.indexOf(after) + 1, split);
-        notifyStateChange();
+        addChild(insert, checkedIndexOfChild(after) + 1, split);
     }
 
     /**
@@ -302,11 +564,13 @@ public abstract class SplitterNode extends Node {
      */
     public void insertNodeAt(Node insert, int index, double split) {
         addChild(insert, index, split);
-        notifyStateChange();
     }
 
     protected void stateChanged() {
-        splitters = null;
+        splittersValid = false;
+        // The visibility of our children might have changed
+        visibleChildren = null;
+        splitOffsetsValid = false;
     }
 
 
@@ -316,11 +580,13 @@ public abstract class SplitterNode extends Node {
      * @param with    The node that the child node should be replaced with
      */
     public void replaceChild(Node current, Node with) {
-        double currentSplit = nodeSplits.get(current);
-        int index = children.indexOf(current);
-        children.remove(current);
-        addChild(with, index, currentSplit);
+        int index = checkedIndexOfChild(current);
+        double currentSplit = splits[index];
+        removeChildAt(index);
+        insertChild(with, index, currentSplit);
         notifyStateChange();
+        postNodeTreeEvent(NodeTreeEvent.childRemoved(this, current, index));
+        postNodeTreeEvent(NodeTreeEvent.childInserted(this, with, index));
     }
 
 
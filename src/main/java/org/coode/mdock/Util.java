@@ -40,7 +40,11 @@ import java.awt.*;
 public class Util {
 
     public static int getX(Node node, Component c, boolean includeSplitter) {
-        int x = (int) Math.round((node.getGloballyNormalisedXLocation() * c.getWidth()));
+        return getX(node.getLayoutGeometry(), node, c, includeSplitter);
+    }
+
+    public static int getX(LayoutGeometry geometry, Node node, Component c, boolean includeSplitter) {
+        int x = geometry.getPixelX(node, c.getWidth(), c.getHeight());
         if(includeSplitter) {
             x = x + Splitter.SPLITTER_WIDTH / 2;
         }
@@ -48,7 +52,11 @@ public class Util {
     }
 
     public static int getY(Node node, Component c, boolean includeSplitter) {
-        int y = (int) Math.round((node.getGloballyNormalisedYLocation() * c.getHeight()));
+        return getY(node.getLayoutGeometry(), node, c, includeSplitter);
+    }
+
+    public static int getY(LayoutGeometry geometry, Node node, Component c, boolean includeSplitter) {
+        int y = geometry.getPixelY(node, c.getWidth(), c.getHeight());
         if(includeSplitter) {
             y = y + Splitter.SPLITTER_WIDTH / 2;
         }
@@ -56,7 +64,11 @@ public class Util {
     }
 
     public static int getWidth(Node node, Component c, boolean includeSplitter) {
-        int w = (int) Math.round((node.getGloballyNormalisedWidth() * c.getWidth()));
+        return getWidth(node.getLayoutGeometry(), node, c, includeSplitter);
+    }
+
+    public static int getWidth(LayoutGeometry geometry, Node node, Component c, boolean includeSplitter) {
+        int w = geometry.getPixelWidth(node, c.getWidth(), c.getHeight());
         if(includeSplitter) {
             w = w - Splitter.SPLITTER_WIDTH;
         }
@@ -64,7 +76,11 @@ public class Util {
     }
 
     public static int getHeight(Node node, Component c,  boolean includeSplitter) {
-        int h = (int) Math.round((node.getGloballyNormalisedHeight() * c.getHeight()));
+        return getHeight(node.getLayoutGeometry(), node, c, includeSplitter);
+    }
+
+    public static int getHeight(LayoutGeometry geometry, Node node, Component c,  boolean includeSplitter) {
+        int h = geometry.getPixelHeight(node, c.getWidth(), c.getHeight());
         if(includeSplitter) {
             h = h - Splitter.SPLITTER_WIDTH;
         }
@@ -72,47 +88,52 @@ public class Util {
     }
 
     public static Rectangle getBounds(Node node, Component c,  boolean includeSplitter) {
-        return new Rectangle(getX(node, c, includeSplitter),
-                             getY(node, c, includeSplitter),
-                             getWidth(node, c, includeSplitter),
-                             getHeight(node, c, includeSplitter));
+        return getBounds(node.getLayoutGeometry(), node, c, includeSplitter);
     }
 
-    public static SplitterNode getDeepestSplitterNode(SplitterNode rootNode, Component c, Point pt) {
-        SplitterNode deepestNode = null;
-        Rectangle bounds = getBounds(rootNode, c, false);
-        if(bounds.contains(pt)) {
-            deepestNode = rootNode;
-            for(Node curChild : rootNode.getVisibleChildren()) {
-                if (curChild instanceof SplitterNode) {
-                    SplitterNode n = getDeepestSplitterNode((SplitterNode) curChild, c, pt);
-                    if(n != null) {
-                        return n;
-                    }
-                }
-            }
+    public static Rectangle getBounds(LayoutGeometry geometry, Node node, Component c,  boolean includeSplitter) {
+        return new Rectangle(getX(geometry, node, c, includeSplitter),
+                             getY(geometry, node, c, includeSplitter),
+                             getWidth(geometry, node, c, includeSplitter),
+                             getHeight(geometry, node, c, includeSplitter));
+    }
+
+    /**
+     * Gets the minimum size of the region occupied by a node, which is the minimum
+     * size of its component (plus the space for the splitters either side of it) or,
+     * for a splitter node, the minimum sizes of its visible children placed side by side.
+     * @param node The node
+     * @return The minimum size
+     */
+    public static Dimension getMinimumSize(Node node) {
+        if(node instanceof ComponentNode) {
+            Dimension size = ((ComponentNode) node).getComponent().getMinimumSize();
+            return new Dimension(size.width + Splitter.SPLITTER_WIDTH, size.height + Splitter.SPLITTER_WIDTH);
         }
-        else {
-            return null;
+        SplitterNode splitterNode = (SplitterNode) node;
+        boolean horizontal = splitterNode.isSplitterDirection(SplitterNode.HORIZONTAL_SPLITTER);
+        Dimension size = new Dimension();
+        for(Node child : splitterNode.getVisibleChildren()) {
+            Dimension childSize = getMinimumSize(child);
+            if(horizontal) {
+                // The children are stacked one above the other
+                size.width = Math.max(size.width, childSize.width);
+                size.height += childSize.height;
+            }
+            else {
+                size.width += childSize.width;
+                size.height = Math.max(size.height, childSize.height);
+            }
         }
-        return deepestNode;
+        return size;
+    }
+
+    public static SplitterNode getDeepestSplitterNode(SplitterNode rootNode, Component c, Point pt) {
+        return rootNode.getLayoutGeometry().getDeepestSplitterNode(rootNode, pt.x, pt.y, c.getWidth(), c.getHeight());
     }
 
     public static Node getDeepestNode(Node rootNode, Component c, Point pt) {
-        Node deepestNode = null;
-        Rectangle bounds = getBounds(rootNode, c, false);
-            if(bounds.contains(pt)) {
-                deepestNode = rootNode;
-                if (rootNode instanceof SplitterNode) {
-                    for(Node curChild : ((SplitterNode) rootNode).getVisibleChildren()) {
-                            Node n = getDeepestNode(curChild, c, pt);
-                            if(n != null) {
-                                return n;
-                            }
-                    }
-                }
-            }
-        return deepestNode;
+        return rootNode.getLayoutGeometry().getDeepestNode(rootNode, pt.x, pt.y, c.getWidth(), c.getHeight());
     }
 
     public static void bringToFront(JComponent component) {
@@ -44,24 +44,31 @@ public class VerticalSplitter extends Splitter {
 
     public void resetBounds() {
         // Set the bounds
-        int x = Util.getX(getChild1(), getParent(), false) - SPLITTER_WIDTH / 2 + 1;
-        int y = Util.getY(getChild1(), getParent(), false) + SPLITTER_WIDTH / 2 + 1;
-        int h = Util.getHeight(getChild1(), getParent(), false) - SPLITTER_WIDTH - 2;
+        Rectangle childBounds = Util.getBounds(getChild1(), getParent(), false);
+        int x = childBounds.x - BOUNDARY_OFFSET;
+        int y = childBounds.y + LENGTH_OFFSET;
+        int h = childBounds.height - SPLITTER_WIDTH - 2;
         int w = Splitter.SPLITTER_WIDTH - 2;
         setBounds(x, y, w, h);
     }
 
     public Point getMaxLocation() {
-        int x = Util.getX(getChild1(), getParent(), false) - SPLITTER_WIDTH / 2;
-        int y = Util.getY(getChild1(), getParent(), false) + SPLITTER_WIDTH / 2;
-        int w = Util.getWidth(getChild1(), getParent(), false);
-        return new Point(x + w, y);
+        LayoutGeometry geometry = getNode().getLayoutGeometry();
+        int y = Util.getY(geometry, getChild1(), getParent(), false) + LENGTH_OFFSET;
+        // The boundary can move right until child1 is its minimum width
+        int right = Util.getX(geometry, getChild1(), getParent(), false)
+                + Util.getWidth(geometry, getChild1(), getParent(), false);
+        int boundary = right - Util.getMinimumSize(getChild1()).width;
+        return new Point(boundary - BOUNDARY_OFFSET, y);
     }
 
     public Point getMinLocation() {
-        int x = Util.getX(getChild0(), getParent(), false);
-        int y = Util.getY(getChild0(), getParent(), false) + SPLITTER_WIDTH / 2;
-        return new Point(x, y);
+        LayoutGeometry geometry = getNode().getLayoutGeometry();
+        int y = Util.getY(geometry, getChild0(), getParent(), false) + LENGTH_OFFSET;
+        // The boundary can move left until child0 is its minimum width
+        int left = Util.getX(geometry, getChild0(), getParent(), false);
+        int boundary = left + Util.getMinimumSize(getChild0()).width;
+        return new Point(boundary - BOUNDARY_OFFSET, y);
     }
 
     protected int convertToLocation(Point pt) {
@@ -46,26 +46,9 @@ public class VerticalSplitterNode extends SplitterNode {
         super(children, splits);
     }
 
-    protected double getGloballyNormalisedWidth(Node child) {
-        // We affect the width of our children.  The globally normalised
-        // width of one of our children, is our globally normalised width
-        // multiplied by the normalised split of the child
-        return getGloballyNormalisedWidth() * getNormalisedSplit(child);
-    }
 
-    public double getGloballyNormalisedXLocation(Node child) {
-        // We affect the X location of our child nodes
-        // Calculate the child positions relative to ours
-        double xLoc = getGloballyNormalisedXLocation();
-        for(Node curChild : getVisibleChildren()) {
-            if (curChild == child) {
-                return xLoc;
-            }
-            else {
-                xLoc += getGloballyNormalisedWidth(curChild);
-            }
-        }
-        return 0.0;
+    public VerticalSplitterNode(List<? extends Node> children, double[] splits) {
+        super(children, splits);
     }
 
     public boolean isSplitterDirection(int direction) {
@@ -80,6 +80,8 @@ public class ExampleFrame extends JFrame {
 
         // The panel which will handle the "drag and drop" of new nodes.
         dynamicConfigPanel = new DynamicConfigPanel(nodePanel);
+        // Components can be moved by dragging their tabs
+        dynamicConfigPanel.setTabDraggingEnabled(true);
 
 
         setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
@@ -123,7 +125,7 @@ public class ExampleFrame extends JFrame {
             System.out.println(sw.getBuffer().toString());
 
             StringReader sr = new StringReader(sw.getBuffer().toString());
-            NodeReanimator reanimator = new NodeReanimator(sr, new ComponentFactory() {
+            NodeReanimator reanimator = new NodeReanimator(new ComponentFactory() {
                 public JComponent createComponent(Map<String, String> properties) {
                     String cls = properties.get("class");
                     try {
@@ -140,9 +142,9 @@ public class ExampleFrame extends JFrame {
                     }
                     return new JButton("Error");
                 }
-            });
+            }, false);
 
-            SplitterNode sn = reanimator.getRootNode();
+            SplitterNode sn = reanimator.read(sr);
 
             NodePanel np = new NodePanel(sn);
             JFrame f = new JFrame();
@@ -161,6 +163,9 @@ public class ExampleFrame extends JFrame {
         catch (TransformerException e1) {
             e1.printStackTrace();
         }
+        catch (NodeReanimationException e1) {
+            e1.printStackTrace();
+        }
     }
 
 
@@ -0,0 +1,134 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+
+public class BinaryNodeSerialiserTestCase {
+
+    private static final ComponentPropertiesFactory PROPERTIES_FACTORY = new ComponentPropertiesFactory() {
+        public Map<String, String> getProperties(JComponent component) {
+            return Collections.singletonMap("text", ((JLabel) component).getText());
+        }
+    };
+
+    private static SplitterNode createTree() {
+        ComponentNode left = new ComponentNode();
+        left.add(new JLabel("Same"), "Tab \u00e9");
+        left.add(new JLabel("Same"), "Right");
+        ComponentNode right = new ComponentNode();
+        right.add(new JLabel("Other"), "Right");
+        ComponentNode bottom = new ComponentNode();
+        bottom.add(new JLabel("Other"), "Bottom");
+        VerticalSplitterNode top = new VerticalSplitterNode(Arrays.asList(left, right), new double[]{0.25, 1.0 / 3});
+        return new HorizontalSplitterNode(Arrays.asList(top, bottom), new double[]{0.5, 0.5});
+    }
+
+    @Test
+    public void testTreeRoundTripsExactly() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new BinaryNodeSerialiser(createTree(), PROPERTIES_FACTORY, bytes).serialise();
+        SplitterNode root = new BinaryNodeReanimator(new ComponentFactory() {
+            public JComponent createComponent(Map<String, String> properties) {
+                return new JLabel(properties.get("text"));
+            }
+        }, false).read(new ByteArrayInputStream(bytes.toByteArray()));
+
+        assertEquals(root.getClass(), HorizontalSplitterNode.class);
+        assertEquals(root.getSplits(), Arrays.asList(0.5, 0.5));
+        SplitterNode top = (SplitterNode) root.getVisibleChildren().get(0);
+        assertEquals(top.getClass(), VerticalSplitterNode.class);
+        assertEquals(top.getSplits(), Arrays.asList(0.25, 1.0 / 3));
+        ComponentNode left = (ComponentNode) top.getVisibleChildren().get(0);
+        assertEquals(left.getLabel(left.getComponents().get(0)), "Tab \u00e9");
+        assertEquals(left.getLabel(left.getComponents().get(1)), "Right");
+        assertEquals(((JLabel) left.getComponents().get(1)).getText(), "Same");
+        ComponentNode bottom = (ComponentNode) root.getVisibleChildren().get(1);
+        assertEquals(((JLabel) bottom.getComponents().get(0)).getText(), "Other");
+    }
+
+    @Test
+    public void testConvertedDescriptorsMatch() throws Exception {
+        StringWriter xml = new StringWriter();
+        new NodeSerialiser(createTree(), PROPERTIES_FACTORY, xml).serialise();
+
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        NodeDescriptorConverter.convertToBinary(new StringReader(xml.toString()), binary);
+        assertTrue(binary.size() < xml.toString().length() / 3);
+
+        StringWriter convertedXml = new StringWriter();
+        NodeDescriptorConverter.convertToXML(new ByteArrayInputStream(binary.toByteArray()), convertedXml);
+        assertEquals(convertedXml.toString(), xml.toString());
+    }
+
+    @Test
+    public void testCorruptCountsAreRejectedBeforeAllocating() throws Exception {
+        BinaryNodeReanimator reanimator = new BinaryNodeReanimator(new ComponentFactory() {
+            public JComponent createComponent(Map<String, String> properties) {
+                return new JLabel();
+            }
+        }, false);
+        // One string, of length Integer.MAX_VALUE
+        byte[] hugeString = {'m', 'd', 'c', 'k', 1, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07};
+        try {
+            reanimator.read(new ByteArrayInputStream(hugeString));
+            fail();
+        }
+        catch (NodeReanimationException e) {
+            assertTrue(e.getMessage().startsWith("Invalid string length"));
+        }
+        // Integer.MAX_VALUE strings, and a splitter with Integer.MAX_VALUE children, with no data for them
+        byte[][] hugeCounts = {
+                {'m', 'd', 'c', 'k', 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07},
+                {'m', 'd', 'c', 'k', 1, 0, 1, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07, 1}
+        };
+        for (byte[] data : hugeCounts) {
+            try {
+                reanimator.read(new ByteArrayInputStream(data));
+                fail();
+            }
+            catch (EOFException e) {
+                // The data runs out before anything large has been allocated
+            }
+        }
+    }
+
+    @Test
+    public void testMalformedVarIntsAreRejected() throws Exception {
+        BinaryNodeReanimator reanimator = new BinaryNodeReanimator(new ComponentFactory() {
+            public JComponent createComponent(Map<String, String> properties) {
+                return new JLabel();
+            }
+        }, false);
+        byte[][] malformed = {
+                // A fifth byte with bits that don't fit in an int
+                {'m', 'd', 'c', 'k', 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x10},
+                // A value that doesn't fit in a positive int
+                {'m', 'd', 'c', 'k', 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x08},
+                // More than five bytes
+                {'m', 'd', 'c', 'k', 1, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, (byte) 0x80, 0x00}
+        };
+        for (byte[] data : malformed) {
+            try {
+                reanimator.read(new ByteArrayInputStream(data));
+                fail();
+            }
+            catch (NodeReanimationException e) {
+                assertEquals(e.getMessage(), "Invalid variable length integer");
+            }
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertTrue;
+
+
+public class ComponentNodeTabbedPaneUITestCase {
+
+    @Test
+    public void testOnlyVisibleTabsAreLaidOutWhenScrolling() {
+        JTabbedPane tabbedPane = new JTabbedPane();
+        tabbedPane.setUI(new ComponentNodeTabbedPaneUI());
+        tabbedPane.setTabLayoutPolicy(JTabbedPane.SCROLL_TAB_LAYOUT);
+        for (int i = 0; i < 300; i++) {
+            tabbedPane.addTab("Tab " + i, new JPanel());
+        }
+        tabbedPane.setSize(400, 200);
+        tabbedPane.doLayout();
+        assertEquals(tabbedPane.getTabRunCount(), 1);
+        Rectangle firstTab = tabbedPane.getBoundsAt(0);
+        assertTrue(!firstTab.isEmpty());
+        assertTrue(tabbedPane.getBoundsAt(299).isEmpty());
+        assertEquals(tabbedPane.indexAtLocation(firstTab.x + 1, firstTab.y + 1), 0);
+
+        // Selecting a tab outside of the window scrolls it into view
+        tabbedPane.setSelectedIndex(250);
+        tabbedPane.doLayout();
+        Rectangle selectedTab = tabbedPane.getBoundsAt(250);
+        assertTrue(!selectedTab.isEmpty());
+        assertTrue(selectedTab.x + selectedTab.width <= tabbedPane.getWidth());
+        assertTrue(tabbedPane.getBoundsAt(0).isEmpty());
+        assertTrue(tabbedPane.indexAtLocation(firstTab.x + 1, firstTab.y + 1) >= 200);
+    }
+}
@@ -0,0 +1,151 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.util.*;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertSame;
+
+
+public class ComponentNodeTestCase {
+
+    private static JTabbedPane getTabbedPane(ComponentNode node) {
+        return (JTabbedPane) node.getComponent().getComponent(0);
+    }
+
+    @Test
+    public void testTabsAreInsertedAndRemovedInPlace() {
+        ComponentNode node = new ComponentNode();
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(node), Arrays.asList(1.0));
+        JButton button0 = new JButton("0");
+        JButton button1 = new JButton("1");
+        JButton button2 = new JButton("2");
+        node.add(button0, "Zero");
+        assertSame(button0.getParent(), node.getComponent());
+
+        node.add(button1, "One");
+        JTabbedPane tabbedPane = getTabbedPane(node);
+        assertEquals(tabbedPane.getTabCount(), 2);
+        tabbedPane.setSelectedComponent(button1);
+
+        node.add(button2, "Two");
+        assertSame(getTabbedPane(node), tabbedPane);
+        assertEquals(tabbedPane.getTabCount(), 3);
+        assertEquals(tabbedPane.getTitleAt(2), "Two");
+        // The selection isn't disturbed by adding or removing other tabs
+        assertSame(tabbedPane.getSelectedComponent(), button1);
+
+        node.remove(button0);
+        assertEquals(tabbedPane.getTabCount(), 2);
+        assertSame(tabbedPane.getSelectedComponent(), button1);
+
+        node.remove(button1);
+        assertEquals(node.getComponent().getComponentCount(), 1);
+        assertSame(button2.getParent(), node.getComponent());
+        assertEquals(button2.isVisible(), true);
+        assertSame(ComponentNode.getComponentNode(button2), node);
+        assertSame(ComponentNode.getComponentNode(button1), null);
+    }
+
+    @Test
+    public void testPlaceholderIsReplacedInPlace() {
+        final List<Map<String, String>> created = new ArrayList<Map<String, String>>();
+        ComponentFactory factory = new ComponentFactory() {
+            public JComponent createComponent(Map<String, String> properties) {
+                created.add(properties);
+                return new JButton(properties.get("name"));
+            }
+        };
+        ComponentNode node = new ComponentNode();
+        JButton button0 = new JButton("0");
+        node.add(button0, "Zero");
+        PlaceholderComponent placeholder = node.addPlaceholder("One", factory, Collections.singletonMap("name", "1"));
+        node.add(new JButton("2"), "Two");
+        assertEquals(created.size(), 0);
+
+        JComponent component = node.materialise(placeholder);
+        assertEquals(created.size(), 1);
+        assertEquals(((JButton) component).getText(), "1");
+        assertSame(node.getComponents().get(1), component);
+        assertEquals(node.getLabel(component), "One");
+        JTabbedPane tabbedPane = getTabbedPane(node);
+        assertSame(tabbedPane.getComponentAt(1), component);
+        assertEquals(tabbedPane.getTitleAt(1), "One");
+        assertSame(node.materialise(placeholder), null);
+    }
+
+    @Test
+    public void testLeastRecentlyUsedTabsAreHibernated() {
+        ComponentPropertiesFactory propertiesFactory = new ComponentPropertiesFactory() {
+            public Map<String, String> getProperties(JComponent component) {
+                return Collections.singletonMap("name", ((JButton) component).getText());
+            }
+        };
+        ComponentFactory componentFactory = new ComponentFactory() {
+            public JComponent createComponent(Map<String, String> properties) {
+                return new JButton(properties.get("name"));
+            }
+        };
+        HibernationPolicy policy = new HibernationPolicy(propertiesFactory, componentFactory, 2);
+        ComponentNode node = new ComponentNode();
+        node.setHibernationPolicy(policy);
+        JButton button0 = new JButton("0");
+        JButton button1 = new JButton("1");
+        JButton button2 = new JButton("2");
+        JButton button3 = new JButton("3");
+        node.add(button0, "Zero");
+        node.add(button1, "One");
+        policy.setPinned(button1, true);
+        node.add(button2, "Two");
+        // Button 0 is selected, button 1 is pinned and button 2 has just been used
+        assertEquals(policy.getLiveComponentCount(), 3);
+
+        node.add(button3, "Three");
+        // Button 2 is the least recently used component that can be hibernated
+        assertSame(node.getComponents().get(2).getClass(), PlaceholderComponent.class);
+        assertEquals(node.getLabel(node.getComponents().get(2)), "Two");
+        assertEquals(((PlaceholderComponent) node.getComponents().get(2)).getProperties().get("name"), "2");
+        assertSame(node.getComponents().get(3), button3);
+        assertEquals(policy.getLiveComponentCount(), 3);
+
+        getTabbedPane(node).setSelectedComponent(button3);
+        // Button 0 is now in an unselected tab
+        assertSame(node.getComponents().get(0).getClass(), PlaceholderComponent.class);
+        assertSame(node.getComponents().get(1), button1);
+        assertEquals(policy.getLiveComponentCount(), 2);
+    }
+
+    @Test
+    public void testRemovingATabKeepsTheLayoutGeometry() {
+        ComponentNode node = new ComponentNode();
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(node), Arrays.asList(1.0));
+        JButton button0 = new JButton("0");
+        node.add(button0, "Zero");
+        node.add(new JButton("1"), "One");
+        node.add(new JButton("2"), "Two");
+        LayoutGeometry geometry = root.getLayoutGeometry();
+        node.remove(button0);
+        assertSame(root.getLayoutGeometry(), geometry);
+    }
+
+    @Test
+    public void testRemovingAComponentFromAnotherNodeDoesNothing() {
+        ComponentNode node = new ComponentNode();
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(node), Arrays.asList(1.0));
+        JButton button0 = new JButton("0");
+        node.add(button0, "Zero");
+        final List<JComponent> removed = new ArrayList<JComponent>();
+        root.addNodeTreeListener(new NodeTreeAdapter() {
+            public void componentRemoved(ComponentNode node, JComponent component) {
+                removed.add(component);
+            }
+        });
+
+        node.remove(new JButton("Other"));
+        assertEquals(node.getComponents(), Arrays.asList(button0));
+        assertSame(button0.getParent(), node.getComponent());
+        assertEquals(removed.size(), 0);
+    }
+}
@@ -0,0 +1,187 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.util.Arrays;
+import java.util.Set;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertNotSame;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
+
+
+public class LayoutGeometryTestCase {
+
+    private static ComponentNode createComponentNode(String label) {
+        ComponentNode node = new ComponentNode();
+        node.add(new JButton(label), label);
+        return node;
+    }
+
+    @Test
+    public void testGeometryIsCachedByRoot() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = createComponentNode("Child1");
+        VerticalSplitterNode root = new VerticalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 3.0));
+
+        LayoutGeometry geometry = child0.getLayoutGeometry();
+        assertSame(geometry, child1.getLayoutGeometry());
+        assertSame(root, geometry.getRootNode());
+
+        assertEquals(geometry.getX(child0), 0.0);
+        assertEquals(geometry.getWidth(child0), 0.25);
+        assertEquals(geometry.getX(child1), 0.25);
+        assertEquals(geometry.getWidth(child1), 0.75);
+        assertEquals(geometry.getHeight(child1), 1.0);
+    }
+
+    @Test
+    public void testSetSplitInvalidatesGeometry() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = createComponentNode("Child1");
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 1.0));
+
+        LayoutGeometry geometry = root.getLayoutGeometry();
+        assertEquals(child1.getGloballyNormalisedYLocation(), 0.5);
+
+        root.setSplit(child0, 3.0);
+        assertEquals(child1.getGloballyNormalisedYLocation(), 0.75);
+        assertEquals(child1.getGloballyNormalisedHeight(), 0.25);
+    }
+
+    @Test
+    public void testSplitChangeOnlyAffectsSubtree() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = createComponentNode("Child1");
+        ComponentNode child2 = createComponentNode("Child2");
+        VerticalSplitterNode vNode = new VerticalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 1.0));
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(vNode, child2), Arrays.asList(1.0, 1.0));
+
+        LayoutGeometry geometry = root.getLayoutGeometry();
+        geometry.takeChangedNodes();
+
+        vNode.setSplit(child1, 3.0);
+        assertSame(geometry, root.getLayoutGeometry());
+        assertEquals(child1.getGloballyNormalisedXLocation(), 0.25);
+        assertEquals(child1.getGloballyNormalisedYLocation(), 0.0);
+        assertEquals(child2.getGloballyNormalisedYLocation(), 0.5);
+
+        Set<Node> changedNodes = geometry.takeChangedNodes();
+        assertEquals(changedNodes.size(), 3);
+        assertTrue(changedNodes.contains(vNode));
+        assertTrue(changedNodes.contains(child0));
+        assertTrue(changedNodes.contains(child1));
+        assertTrue(geometry.takeChangedNodes().isEmpty());
+
+        root.addChild(createComponentNode("Child3"), 1.0);
+        assertNotSame(geometry, root.getLayoutGeometry());
+    }
+
+    @Test
+    public void testInvisibleNodesHaveNoRegion() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = new ComponentNode();
+        VerticalSplitterNode root = new VerticalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 1.0));
+
+        LayoutGeometry geometry = root.getLayoutGeometry();
+        assertFalse(geometry.contains(child1));
+        assertEquals(geometry.getWidth(child0), 1.0);
+
+        child1.add(new JButton("Child1"), "Child1");
+        assertEquals(child0.getGloballyNormalisedWidth(), 0.5);
+        assertEquals(child1.getGloballyNormalisedXLocation(), 0.5);
+    }
+
+    @Test
+    public void testDeepestNodeAt() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = createComponentNode("Child1");
+        ComponentNode child2 = createComponentNode("Child2");
+        ComponentNode child3 = createComponentNode("Child3");
+        VerticalSplitterNode vNode = new VerticalSplitterNode(Arrays.asList(child0, child1, child2), Arrays.asList(1.0, 2.0, 1.0));
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(vNode, child3), Arrays.asList(1.0, 1.0));
+
+        assertSame(root.getDeepestNodeAt(0.1, 0.1), child0);
+        assertSame(root.getDeepestNodeAt(0.25, 0.1), child1);
+        assertSame(root.getDeepestNodeAt(0.74, 0.49), child1);
+        assertSame(root.getDeepestNodeAt(0.75, 0.1), child2);
+        assertSame(root.getDeepestNodeAt(0.5, 0.5), child3);
+        assertSame(root.getLayoutGeometry().getDeepestSplitterNode(root, 0.9, 0.1), vNode);
+        assertSame(root.getLayoutGeometry().getDeepestSplitterNode(root, 0.9, 0.9), root);
+        assertSame(vNode.getDeepestNodeAt(0.5, 0.9), null);
+        assertSame(root.getDeepestNodeAt(1.0, 0.5), null);
+    }
+
+    @Test
+    public void testPixelBoundsTileExactly() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = createComponentNode("Child1");
+        ComponentNode child2 = createComponentNode("Child2");
+        ComponentNode child3 = createComponentNode("Child3");
+        VerticalSplitterNode vNode = new VerticalSplitterNode(Arrays.asList(child0, child1, child2), Arrays.asList(1.0, 1.0, 1.0));
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(vNode, child3), Arrays.asList(1.0, 2.0));
+
+        LayoutGeometry geometry = root.getLayoutGeometry();
+        assertEquals(geometry.getPixelWidth(child0, 100, 101), 34);
+        assertEquals(geometry.getPixelX(child1, 100, 101), 34);
+        assertEquals(geometry.getPixelWidth(child1, 100, 101), 33);
+        assertEquals(geometry.getPixelX(child2, 100, 101), 67);
+        assertEquals(geometry.getPixelWidth(child2, 100, 101), 33);
+        assertEquals(geometry.getPixelHeight(vNode, 100, 101), 34);
+        assertEquals(geometry.getPixelY(child3, 100, 101), 34);
+        assertEquals(geometry.getPixelHeight(child3, 100, 101), 67);
+
+        assertSame(geometry.getDeepestNode(root, 33, 0, 100, 101), child0);
+        assertSame(geometry.getDeepestNode(root, 34, 33, 100, 101), child1);
+        assertSame(geometry.getDeepestNode(root, 99, 34, 100, 101), child3);
+        assertSame(geometry.getDeepestNode(root, 100, 34, 100, 101), null);
+        assertSame(geometry.getDeepestSplitterNode(root, 50, 10, 100, 101), vNode);
+    }
+
+    @Test
+    public void testOnlyNodesWhosePixelsChangeAreReported() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = createComponentNode("Child1");
+        ComponentNode child2 = createComponentNode("Child2");
+        VerticalSplitterNode root = new VerticalSplitterNode(Arrays.asList(child0, child1, child2), Arrays.asList(1.0, 1.0, 2.0));
+
+        LayoutGeometry geometry = root.getLayoutGeometry();
+        assertEquals(geometry.getPixelWidth(child2, 10, 10), 5);
+        geometry.takeChangedNodes();
+
+        // A tiny change moves the normalised boundary, but not the pixel boundary
+        root.setSplit(child0, 1.001);
+        root.setSplit(child1, 0.999);
+        Set<Node> changedNodes = geometry.takeChangedNodes();
+        assertEquals(changedNodes.size(), 1);
+        assertTrue(changedNodes.contains(root));
+    }
+
+    @Test
+    public void testPixelBoundsAreKeptForEachSize() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = createComponentNode("Child1");
+        VerticalSplitterNode root = new VerticalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 1.0));
+
+        LayoutGeometry geometry = root.getLayoutGeometry();
+        assertEquals(geometry.getPixelWidth(child0, 100, 10), 50);
+        geometry.takeChangedNodes();
+
+        // Measuring the tree at another size leaves the first size alone
+        assertEquals(geometry.getPixelWidth(child0, 10, 10), 5);
+        assertTrue(geometry.takeChangedNodes().isEmpty());
+
+        // This moves the boundary at the first size, but not at the second
+        root.setSplit(child0, 1.01);
+        root.setSplit(child1, 0.99);
+        Set<Node> changedNodes = geometry.takeChangedNodes();
+        assertTrue(changedNodes.contains(child0));
+        assertTrue(changedNodes.contains(child1));
+        assertEquals(geometry.getPixelWidth(child0, 100, 10), 51);
+        assertEquals(geometry.getPixelX(child1, 100, 10), 51);
+        assertEquals(geometry.getPixelWidth(child0, 10, 10), 5);
+    }
+}
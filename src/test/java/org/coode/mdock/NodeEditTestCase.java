@@ -0,0 +1,164 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static junit.framework.Assert.assertEquals;
+
+
+public class NodeEditTestCase {
+
+    private static ComponentNode createComponentNode(String label) {
+        ComponentNode node = new ComponentNode();
+        node.add(new JButton(label), label);
+        return node;
+    }
+
+    private static class CountingSplitterNode extends HorizontalSplitterNode {
+
+        private int stateChangedCount;
+
+        public CountingSplitterNode(List<? extends Node> children, List<Double> splits) {
+            super(children, splits);
+        }
+
+        protected void stateChanged() {
+            super.stateChanged();
+            stateChangedCount++;
+        }
+    }
+
+    @Test
+    public void testStateChangedOncePerAncestor() {
+        ComponentNode child0 = createComponentNode("Child0");
+        CountingSplitterNode root = new CountingSplitterNode(Arrays.asList(child0), Arrays.asList(1.0));
+        root.insertNodeAt(createComponentNode("Child1"), 1, 1.0);
+        assertEquals(root.stateChangedCount, 1);
+    }
+
+    @Test
+    public void testEditCoalescesNotifications() {
+        final CountingSplitterNode root = new CountingSplitterNode(new ArrayList<Node>(), new ArrayList<Double>());
+        final List<ComponentNode> children = new ArrayList<ComponentNode>();
+        root.edit(new NodeEdit() {
+            public void edit(Node rootNode) {
+                for (int i = 0; i < 30; i++) {
+                    ComponentNode child = createComponentNode("Child" + i);
+                    children.add(child);
+                    root.addChild(child, 1.0);
+                }
+            }
+        });
+        assertEquals(root.stateChangedCount, 1);
+        assertEquals(root.getVisibleChildren().size(), 30);
+        assertEquals(children.get(29).getGloballyNormalisedYLocation(), 29.0 / 30.0, 1e-9);
+    }
+
+    private static class RecordingListener extends NodeTreeAdapter {
+
+        private final List<String> events = new ArrayList<String>();
+
+        public void childInserted(SplitterNode parent, Node child, int index) {
+            events.add("inserted " + index);
+        }
+
+        public void childRemoved(SplitterNode parent, Node child, int index) {
+            events.add("removed " + index);
+        }
+
+        public void splitChanged(SplitterNode parent, Node child) {
+            events.add("split " + parent.getSplit(child));
+        }
+
+        public void componentAdded(ComponentNode node, JComponent component) {
+            events.add("added " + node.getLabel(component));
+        }
+
+        public void componentRemoved(ComponentNode node, JComponent component) {
+            events.add("removed " + ((JButton) component).getText());
+        }
+    }
+
+    @Test
+    public void testEventsBubbleToAncestors() {
+        ComponentNode child0 = createComponentNode("Child0");
+        ComponentNode child1 = createComponentNode("Child1");
+        VerticalSplitterNode vNode = new VerticalSplitterNode(Arrays.asList(child0), Arrays.asList(1.0));
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(vNode, child1), Arrays.asList(1.0, 1.0));
+        RecordingListener listener = new RecordingListener();
+        root.addNodeTreeListener(listener);
+
+        vNode.addChild(createComponentNode("Child2"), 2.0);
+        vNode.setSplit(child0, 3.0);
+        child1.add(new JButton("Child3"), "Child3");
+        root.removeChild(child1);
+
+        assertEquals(listener.events, Arrays.asList("inserted 1", "split 3.0", "added Child3", "removed 1"));
+    }
+
+    @Test
+    public void testEventsAreDeliveredWhenEditCompletes() {
+        final ComponentNode child0 = createComponentNode("Child0");
+        final HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(child0), Arrays.asList(1.0));
+        final RecordingListener listener = new RecordingListener();
+        root.addNodeTreeListener(listener);
+
+        root.edit(new NodeEdit() {
+            public void edit(Node rootNode) {
+                root.insertNodeAfter(createComponentNode("Child1"), child0, SplitterNode.HORIZONTAL_SPLITTER);
+                assertEquals(listener.events.size(), 0);
+            }
+        });
+        assertEquals(listener.events, Arrays.asList("split 0.5", "inserted 1"));
+    }
+
+    @Test
+    public void testEventsFromNodesRemovedDuringEditAreDelivered() {
+        final ComponentNode child0 = createComponentNode("Child0");
+        final ComponentNode child1 = createComponentNode("Child1");
+        final HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(child0, child1),
+                                                                        Arrays.asList(1.0, 1.0));
+        final RecordingListener listener = new RecordingListener();
+        root.addNodeTreeListener(listener);
+        final RecordingListener child1Listener = new RecordingListener();
+        child1.addNodeTreeListener(child1Listener);
+
+        root.edit(new NodeEdit() {
+            public void edit(Node rootNode) {
+                // Removing the last component removes the node from the tree
+                child1.remove(child1.getComponents().get(0));
+                assertEquals(child1.getParent(), null);
+                // The detached node's events are still part of the edit
+                child1.add(new JButton("Child2"), "Child2");
+                assertEquals(listener.events.size(), 0);
+                assertEquals(child1Listener.events.size(), 0);
+            }
+        });
+        assertEquals(listener.events, Arrays.asList("removed Child1", "removed 1"));
+        assertEquals(child1Listener.events, Arrays.asList("removed Child1", "added Child2"));
+    }
+
+    @Test
+    public void testStateChangesOfNodesRemovedDuringEditAreDeferred() {
+        final CountingSplitterNode subtree = new CountingSplitterNode(Arrays.asList(createComponentNode("Child0")),
+                                                                      Arrays.asList(1.0));
+        final HorizontalSplitterNode root = new HorizontalSplitterNode(
+                Arrays.asList(subtree, createComponentNode("Child1")), Arrays.asList(1.0, 1.0));
+
+        root.edit(new NodeEdit() {
+            public void edit(Node rootNode) {
+                root.removeChild(subtree);
+                assertEquals(subtree.getParent(), null);
+                subtree.addChild(createComponentNode("Child2"), 1.0);
+                subtree.addChild(createComponentNode("Child3"), 1.0);
+                assertEquals(subtree.stateChangedCount, 0);
+            }
+        });
+        assertEquals(subtree.stateChangedCount, 1);
+        assertEquals(subtree.getVisibleChildren().size(), 3);
+    }
+}
@@ -0,0 +1,25 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+
+
+public class NodePanelTestCase {
+
+    @Test
+    public void testPanelOnlyListensToTreeWhileDisplayable() {
+        ComponentNode node = new ComponentNode();
+        node.add(new JButton("0"), "Zero");
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(node), Arrays.asList(1.0));
+        NodePanel panel = new NodePanel(root);
+        assertEquals(root.getNodeTreeListeners().length, 0);
+        panel.addNotify();
+        assertEquals(root.getNodeTreeListeners().length, 1);
+        panel.removeNotify();
+        assertEquals(root.getNodeTreeListeners().length, 0);
+    }
+}
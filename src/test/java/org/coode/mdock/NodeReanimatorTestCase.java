@@ -0,0 +1,58 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.io.StringReader;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertNull;
+import static junit.framework.Assert.assertTrue;
+import static junit.framework.Assert.fail;
+
+
+public class NodeReanimatorTestCase {
+
+    private static final ComponentFactory FACTORY = new ComponentFactory() {
+        public JComponent createComponent(Map<String, String> properties) {
+            return new JLabel(properties.get("text"));
+        }
+    };
+
+    @Test
+    public void testDescriptorIsReadInOnePass() throws Exception {
+        String descriptor = "<layout><HSNode splits=\"0.5 1.5\">" +
+                "<VSNode splits=\" 2.0  1.0 \"><CNode><Component label=\"a\"/></CNode>" +
+                "<CNode><Component label=\"b\"><Property id=\"text\" value=\"B\"/></Component></CNode></VSNode>" +
+                "<CNode><Component label=\"c\"/></CNode></HSNode></layout>";
+        NodeReanimator reanimator = new NodeReanimator(FACTORY, false);
+        SplitterNode root = reanimator.read(new StringReader(descriptor));
+        assertEquals(root.getClass(), HorizontalSplitterNode.class);
+        assertEquals(root.getSplit(root.getVisibleChildren().get(1)), 1.5);
+        SplitterNode vertical = (SplitterNode) root.getVisibleChildren().get(0);
+        assertEquals(vertical.getSplit(vertical.getVisibleChildren().get(0)), 2.0);
+        ComponentNode componentNode = (ComponentNode) vertical.getVisibleChildren().get(1);
+        assertEquals(((JLabel) componentNode.getComponents().get(0)).getText(), "B");
+        // The parser is reused
+        assertEquals(reanimator.read(new StringReader(descriptor)).getVisibleChildren().size(), 2);
+    }
+
+    @Test
+    public void testInvalidDescriptorIsReported() throws Exception {
+        NodeReanimator reanimator = new NodeReanimator(FACTORY, false);
+        try {
+            reanimator.read(new StringReader("<layout>\n<VSNode splits=\"1.0\"><CNode/><CNode/></VSNode></layout>"));
+            fail();
+        }
+        catch (NodeReanimationException e) {
+            assertTrue(e.getMessage().startsWith("Line 2"));
+        }
+    }
+
+    @Test
+    public void testLegacyConstructorLeavesRootNullOnFailure() throws Exception {
+        NodeReanimator reanimator = new NodeReanimator(new StringReader("<layout><VSNode splits=\"1.0\">"), FACTORY);
+        assertNull(reanimator.getRootNode());
+    }
+}
@@ -0,0 +1,85 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static junit.framework.Assert.assertEquals;
+
+
+public class NodeSerialiserTestCase {
+
+    @Test
+    public void testSerialisedTreeIsReanimated() throws Exception {
+        ComponentNode left = new ComponentNode();
+        left.add(new JLabel(), "A \"quoted\" <label> & more");
+        left.add(new JLabel(), "Second\ttab");
+        ComponentNode right = new ComponentNode();
+        right.add(new JLabel(), "Right");
+        VerticalSplitterNode root = new VerticalSplitterNode(Arrays.asList(left, right), Arrays.asList(0.25, 1.0 / 3));
+
+        StringWriter writer = new StringWriter();
+        new NodeSerialiser(root, new ComponentPropertiesFactory() {
+            public Map<String, String> getProperties(JComponent component) {
+                return Collections.singletonMap("class", component.getClass().getName());
+            }
+        }, writer).serialise();
+
+        NodeReanimator reanimator = new NodeReanimator(new StringReader(writer.toString()), new ComponentFactory() {
+            public JComponent createComponent(Map<String, String> properties) {
+                assertEquals(properties.get("class"), JLabel.class.getName());
+                return new JLabel();
+            }
+        });
+        SplitterNode reanimated = reanimator.getRootNode();
+        assertEquals(reanimated.getClass(), VerticalSplitterNode.class);
+        assertEquals(reanimated.getSplits(), Arrays.asList(0.25, 1.0 / 3));
+        ComponentNode reanimatedLeft = (ComponentNode) reanimated.getVisibleChildren().get(0);
+        assertEquals(reanimatedLeft.getLabel(reanimatedLeft.getComponents().get(0)), "A \"quoted\" <label> & more");
+        assertEquals(reanimatedLeft.getLabel(reanimatedLeft.getComponents().get(1)), "Second\ttab");
+    }
+
+    private static SplitterNode roundTrip(SplitterNode root) throws Exception {
+        StringWriter writer = new StringWriter();
+        new NodeSerialiser(root, new ComponentPropertiesFactory() {
+            public Map<String, String> getProperties(JComponent component) {
+                return Collections.emptyMap();
+            }
+        }, writer).serialise();
+        return new NodeReanimator(new ComponentFactory() {
+            public JComponent createComponent(Map<String, String> properties) {
+                return new JLabel();
+            }
+        }, false).read(new StringReader(writer.toString()));
+    }
+
+    @Test
+    public void testWhiteSpaceIsKeptAndOtherControlCharactersAreDropped() throws Exception {
+        ComponentNode node = new ComponentNode();
+        node.add(new JLabel(), "Tab\tNew\nLine\rReturn");
+        node.add(new JLabel(), "Start\u0001End\u001F");
+        SplitterNode reanimated = roundTrip(new VerticalSplitterNode(Arrays.asList(node), Arrays.asList(1.0)));
+        ComponentNode reanimatedNode = (ComponentNode) reanimated.getVisibleChildren().get(0);
+        assertEquals(reanimatedNode.getLabel(reanimatedNode.getComponents().get(0)), "Tab\tNew\nLine\rReturn");
+        assertEquals(reanimatedNode.getLabel(reanimatedNode.getComponents().get(1)), "StartEnd");
+    }
+
+    @Test
+    public void testSplitsInScientificNotationAreReanimated() throws Exception {
+        ComponentNode node0 = new ComponentNode();
+        node0.add(new JLabel(), "0");
+        ComponentNode node1 = new ComponentNode();
+        node1.add(new JLabel(), "1");
+        ComponentNode node2 = new ComponentNode();
+        node2.add(new JLabel(), "2");
+        List<Double> splits = Arrays.asList(1.0E-10, 0.1 + 0.2, 1.0E7);
+        SplitterNode reanimated = roundTrip(new HorizontalSplitterNode(Arrays.asList(node0, node1, node2), splits));
+        assertEquals(reanimated.getSplits(), splits);
+    }
+}
@@ -6,6 +6,9 @@ import javax.swing.*;
 import java.util.Arrays;
 
 import static junit.framework.Assert.assertEquals;
+import static junit.framework.Assert.assertFalse;
+import static junit.framework.Assert.assertSame;
+import static junit.framework.Assert.assertTrue;
 
 
 /**
@@ -124,4 +127,70 @@ public class RootNodeTestCase {
 
     }
 
+    @Test
+    public void testSplitsFollowChildInsertionAndRemoval() {
+        ComponentNode child0 = new ComponentNode();
+        child0.add(new JButton("Child0"), "Child0");
+        ComponentNode child1 = new ComponentNode();
+        child1.add(new JButton("Child1"), "Child1");
+        ComponentNode child2 = new ComponentNode();
+        child2.add(new JButton("Child2"), "Child2");
+
+        VerticalSplitterNode verticalSplitterNode = new VerticalSplitterNode(
+                Arrays.asList(child0, child2),
+                Arrays.asList(1.0, 3.0));
+        verticalSplitterNode.insertNodeAt(child1, 1, 2.0);
+
+        assertEquals(verticalSplitterNode.getSplits(), Arrays.asList(1.0, 2.0, 3.0));
+        assertEquals(verticalSplitterNode.getChildSpan(), 6.0);
+        assertEquals(verticalSplitterNode.getChildOffset(child0), 0.0);
+        assertEquals(verticalSplitterNode.getChildOffset(child1), 1.0);
+        assertEquals(verticalSplitterNode.getChildOffset(child2), 3.0);
+
+        verticalSplitterNode.removeChild(child1);
+        assertEquals(verticalSplitterNode.getSplit(child2), 3.0);
+        assertEquals(verticalSplitterNode.getChildSpan(), 4.0);
+        assertEquals(verticalSplitterNode.getChildOffset(child2), 1.0);
+    }
+
+    @Test
+    public void testVisibilityIsCachedUntilStateChange() {
+        ComponentNode child0 = new ComponentNode();
+        JButton button = new JButton("Child0");
+        child0.add(button, "Child0");
+        ComponentNode child1 = new ComponentNode();
+        child1.add(new JButton("Child1"), "Child1");
+        VerticalSplitterNode vNode = new VerticalSplitterNode(Arrays.asList(child0), Arrays.asList(1.0));
+        HorizontalSplitterNode hNode = new HorizontalSplitterNode(Arrays.asList(vNode, child1), Arrays.asList(1.0, 1.0));
+        new JPanel().add(child0.getComponent());
+
+        assertSame(hNode.getVisibleChildren(), hNode.getVisibleChildren());
+        assertEquals(hNode.getVisibleDescendantCount(), 2);
+
+        child0.remove(button);
+        assertFalse(vNode.isVisible());
+        assertTrue(hNode.isVisible());
+        assertEquals(hNode.getVisibleChildren(), Arrays.<Node>asList(child1));
+        assertEquals(hNode.getVisibleDescendantCount(), 1);
+    }
+
+    @Test
+    public void testSplittersAreReusedForSurvivingPairs() {
+        ComponentNode child0 = new ComponentNode();
+        child0.add(new JButton("Child0"), "Child0");
+        ComponentNode child1 = new ComponentNode();
+        child1.add(new JButton("Child1"), "Child1");
+        ComponentNode child2 = new ComponentNode();
+        child2.add(new JButton("Child2"), "Child2");
+        VerticalSplitterNode vNode = new VerticalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 1.0));
+
+        Splitter splitter = vNode.getSplitters().get(0);
+        vNode.insertNodeAfter(child2, child1, SplitterNode.VERTICAL_SPLITTER);
+
+        assertEquals(vNode.getSplitters().size(), 2);
+        assertSame(vNode.getSplitters().get(0), splitter);
+        assertSame(vNode.getSplitters().get(1).getChild0(), child1);
+        assertSame(vNode.getSplitters().get(1).getChild1(), child2);
+    }
+
 }
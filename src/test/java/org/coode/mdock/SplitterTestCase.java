@@ -0,0 +1,88 @@
+package org.coode.mdock;
+
+import org.junit.Test;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.Arrays;
+
+import static junit.framework.Assert.assertEquals;
+
+
+public class SplitterTestCase {
+
+    private static ComponentNode createComponentNode(int minWidth, int minHeight) {
+        JPanel component = new JPanel();
+        component.setMinimumSize(new Dimension(minWidth, minHeight));
+        ComponentNode node = new ComponentNode();
+        node.add(component, "Component");
+        return node;
+    }
+
+    private static Splitter layOut(SplitterNode root, int width, int height) {
+        NodePanel panel = new NodePanel(root);
+        panel.setSize(width, height);
+        panel.doLayout();
+        return root.getSplitters().get(0);
+    }
+
+    private static void drag(Splitter splitter, int x, int y) {
+        splitter.startDragging(new Point());
+        splitter.setLocation(x, y);
+        splitter.endDragging(new Point());
+        splitter.getParent().doLayout();
+    }
+
+    @Test
+    public void testVerticalSplitterIsClampedToMinimumWidths() {
+        ComponentNode child0 = createComponentNode(50, 10);
+        ComponentNode child1 = createComponentNode(30, 10);
+        VerticalSplitterNode root = new VerticalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 1.0));
+        Splitter splitter = layOut(root, 200, 100);
+        assertEquals(splitter.getLocation(), new Point(98, 4));
+
+        // The splitter stops where child0 is its minimum width, and sits
+        // in the middle of the gap after it
+        JComponent component0 = child0.getComponent();
+        drag(splitter, 0, 50);
+        assertEquals(component0.getWidth(), component0.getMinimumSize().width);
+        assertEquals(splitter.getLocation(), new Point(component0.getX() + component0.getWidth() + 1, 4));
+
+        JComponent component1 = child1.getComponent();
+        drag(splitter, 1000, 50);
+        assertEquals(component1.getWidth(), component1.getMinimumSize().width);
+        assertEquals(splitter.getLocation(), new Point(component1.getX() - splitter.getWidth() - 1, 4));
+    }
+
+    @Test
+    public void testHorizontalSplitterIsClampedToMinimumHeights() {
+        ComponentNode child0 = createComponentNode(10, 50);
+        ComponentNode child1 = createComponentNode(10, 30);
+        HorizontalSplitterNode root = new HorizontalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 1.0));
+        Splitter splitter = layOut(root, 100, 200);
+        assertEquals(splitter.getLocation(), new Point(4, 98));
+
+        JComponent component0 = child0.getComponent();
+        drag(splitter, 50, 0);
+        assertEquals(component0.getHeight(), component0.getMinimumSize().height);
+        assertEquals(splitter.getLocation(), new Point(4, component0.getY() + component0.getHeight() + 1));
+
+        JComponent component1 = child1.getComponent();
+        drag(splitter, 50, 1000);
+        assertEquals(component1.getHeight(), component1.getMinimumSize().height);
+        assertEquals(splitter.getLocation(), new Point(4, component1.getY() - splitter.getHeight() - 1));
+    }
+
+    @Test
+    public void testSplitterDoesNotMoveWithoutRoomForBothMinimums() {
+        ComponentNode child0 = createComponentNode(50, 10);
+        ComponentNode child1 = createComponentNode(30, 10);
+        VerticalSplitterNode root = new VerticalSplitterNode(Arrays.asList(child0, child1), Arrays.asList(1.0, 1.0));
+        Splitter splitter = layOut(root, 80, 100);
+        drag(splitter, 0, 50);
+        assertEquals(splitter.getLocation(), new Point(38, 4));
+        assertEquals(root.getSplit(child0), 1.0);
+        drag(splitter, 1000, 50);
+        assertEquals(splitter.getLocation(), new Point(38, 4));
+    }
+}